@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip.benchmarks;
+
+import java.awt.BorderLayout;
+import java.lang.reflect.InvocationTargetException;
+
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.JRootPane;
+import javax.swing.SwingUtilities;
+
+/**
+ * A stand-in for a window, such that balloon tips can be created and positioned without a display
+ * The root pane is hosted by a plain panel instead of a JFrame, so it works with -Djava.awt.headless=true.
+ * Its layered pane serves as the balloon tips' top-level container.
+ * @author Tim Molderez
+ */
+public final class HeadlessHost {
+	private final JPanel host = new JPanel(new BorderLayout());
+	private final JRootPane rootPane = new JRootPane();
+	private final JButton attachedComponent;
+
+	/**
+	 * Constructor
+	 * The host contains a single component, which balloon tips can be attached to.
+	 * (Should be called on the event dispatch thread.)
+	 */
+	public HeadlessHost() {
+		attachedComponent = new JButton("Attached component");
+		JPanel contents = new JPanel(null);
+		contents.add(attachedComponent);
+		attachedComponent.setBounds(300, 250, 150, 30);
+		setup(contents, 800, 600);
+	}
+
+	/**
+	 * Constructor
+	 * (Should be called on the event dispatch thread.)
+	 * @param contents		the host's contents; it fills up the whole content pane
+	 * @param width			width of the host
+	 * @param height		height of the host
+	 */
+	public HeadlessHost(JComponent contents, int width, int height) {
+		attachedComponent = null;
+		setup(contents, width, height);
+	}
+
+	/**
+	 * Get the root pane, whose layered pane contains the balloon tips
+	 * @return		the root pane
+	 */
+	public JRootPane getRootPane() {
+		return rootPane;
+	}
+
+	/**
+	 * Get a component that balloon tips can be attached to
+	 * @return		the component (null if the host was given its own contents)
+	 */
+	public JButton getAttachedComponent() {
+		return attachedComponent;
+	}
+
+	/**
+	 * Resizes the host, as if the user resized the window
+	 * (Should be called on the event dispatch thread.)
+	 * @param width			new width
+	 * @param height		new height
+	 */
+	public void resize(int width, int height) {
+		host.setSize(width, height);
+		host.validate();
+	}
+
+	/**
+	 * Releases the host's resources
+	 * (Should be called on the event dispatch thread.)
+	 */
+	public void dispose() {
+		host.removeNotify();
+	}
+
+	/*
+	 * Puts the contents in the root pane, and makes the host displayable
+	 */
+	private void setup(JComponent contents, int width, int height) {
+		rootPane.getContentPane().add(contents);
+		host.add(rootPane);
+		host.setSize(width, height);
+		host.addNotify();
+		host.validate();
+	}
+
+	/**
+	 * Runs a task on the event dispatch thread, and waits until it's done
+	 * Balloon tips are Swing components, so anything that modifies them is run this way.
+	 * @param task		the task
+	 */
+	public static void onEdt(Runnable task) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			task.run();
+			return;
+		}
+		try {
+			SwingUtilities.invokeAndWait(task);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+}
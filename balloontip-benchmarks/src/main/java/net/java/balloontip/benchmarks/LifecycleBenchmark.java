@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip.benchmarks;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JLabel;
+
+import net.java.balloontip.BalloonTip;
+import net.java.balloontip.BalloonTip.AttachLocation;
+import net.java.balloontip.BalloonTip.Orientation;
+import net.java.balloontip.styles.BalloonTipStyle;
+import net.java.balloontip.styles.RoundedBalloonStyle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to create a balloon tip, and to close it again
+ * Both are done on the event dispatch thread, in batches of BATCH balloon tips. Closing is measured on its own,
+ * by creating each batch of balloon tips before the invocation that closes them.
+ * @author Tim Molderez
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LifecycleBenchmark {
+	static final int BATCH = 100;
+
+	/**
+	 * A batch of balloon tips, attached to a component in a headless host
+	 */
+	@State(Scope.Thread)
+	public static class Balloons {
+		HeadlessHost host;
+		final BalloonTipStyle style = new RoundedBalloonStyle(5, 5, Color.WHITE, Color.BLACK);
+		final BalloonTip[] balloons = new BalloonTip[BATCH];
+
+		final Runnable createBatch = new Runnable() {
+			public void run() {
+				for (int i = 0; i < BATCH; ++i) {
+					balloons[i] = new BalloonTip(host.getAttachedComponent(), new JLabel("A benchmark balloon tip"), style,
+							Orientation.LEFT_ABOVE, AttachLocation.ALIGNED, 20, 20, true);
+				}
+			}
+		};
+
+		final Runnable closeBatch = new Runnable() {
+			public void run() {
+				for (int i = 0; i < BATCH; ++i) {
+					if (balloons[i] != null) {
+						balloons[i].closeBalloon();
+						balloons[i] = null;
+					}
+				}
+			}
+		};
+
+		@Setup(Level.Trial)
+		public void setup() {
+			HeadlessHost.onEdt(new Runnable() {
+				public void run() {
+					host = new HeadlessHost();
+				}
+			});
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			HeadlessHost.onEdt(new Runnable() {
+				public void run() {
+					host.dispose();
+				}
+			});
+		}
+
+		/**
+		 * Closes whatever balloon tips are left over after an invocation
+		 */
+		@TearDown(Level.Invocation)
+		public void closeLeftovers() {
+			HeadlessHost.onEdt(closeBatch);
+		}
+	}
+
+	/**
+	 * A batch of balloon tips that is already created before each invocation
+	 */
+	@State(Scope.Thread)
+	public static class OpenBalloons extends Balloons {
+		@Setup(Level.Invocation)
+		public void createBatch() {
+			HeadlessHost.onEdt(createBatch);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public BalloonTip[] construct(Balloons state) {
+		HeadlessHost.onEdt(state.createBatch);
+		return state.balloons;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public BalloonTip[] closeBalloon(OpenBalloons state) {
+		HeadlessHost.onEdt(state.closeBatch);
+		return state.balloons;
+	}
+}
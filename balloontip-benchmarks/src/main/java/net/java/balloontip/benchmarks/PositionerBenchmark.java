@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip.benchmarks;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JLabel;
+
+import net.java.balloontip.BalloonTip;
+import net.java.balloontip.positioners.BalloonTipPositioner;
+import net.java.balloontip.positioners.CenteredPositioner;
+import net.java.balloontip.positioners.LeftAbovePositioner;
+import net.java.balloontip.positioners.LeftBelowPositioner;
+import net.java.balloontip.positioners.RightAbovePositioner;
+import net.java.balloontip.positioners.RightBelowPositioner;
+import net.java.balloontip.styles.RoundedBalloonStyle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long each positioner takes to determine and apply a balloon tip's location
+ * In determineAndSetLocation, the attached rectangle alternates between two positions (one near the window's edge),
+ * so the balloon tip actually moves and flips in each call. Flipping revalidates the balloon tip, so its preferred size
+ * needs to be recomputed each time. In moveWithoutFlipping, the balloon tip only moves a few pixels, so its preferred size
+ * is taken from its cache. At the end of each trial, the number of times the contents' preferred size was requested
+ * per call is printed. Positioning modifies Swing components, so it's done on the event dispatch thread,
+ * in batches of BATCH calls to keep the cost of switching threads out of the results.
+ * @author Tim Molderez
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PositionerBenchmark {
+	static final int BATCH = 1000;
+
+	@Param({"LeftAbove", "LeftBelow", "RightAbove", "RightBelow", "Centered"})
+	public String positioner;
+
+	private HeadlessHost host;
+	private BalloonTip balloon;
+	private BalloonTipPositioner balloonPositioner;
+	private CountingLabel contents;
+	private long positionings;
+	private final Rectangle[] attached = {new Rectangle(300, 250, 150, 30), new Rectangle(5, 5, 150, 30)};
+	private final Rectangle[] nearbyAttached = {new Rectangle(300, 250, 150, 30), new Rectangle(310, 255, 150, 30)};
+
+	private final Runnable positionBatch = new Runnable() {
+		public void run() {
+			for (int i = 0; i < BATCH; ++i) {
+				balloonPositioner.determineAndSetLocation(attached[i & 1]);
+			}
+			positionings += BATCH;
+		}
+	};
+
+	private final Runnable moveBatch = new Runnable() {
+		public void run() {
+			for (int i = 0; i < BATCH; ++i) {
+				balloonPositioner.determineAndSetLocation(nearbyAttached[i & 1]);
+			}
+			positionings += BATCH;
+		}
+	};
+
+	@Setup(Level.Trial)
+	public void setup() {
+		balloonPositioner = createPositioner(positioner);
+		HeadlessHost.onEdt(new Runnable() {
+			public void run() {
+				host = new HeadlessHost();
+				contents = new CountingLabel("A benchmark balloon tip");
+				balloon = new BalloonTip(host.getAttachedComponent(), contents,
+						new RoundedBalloonStyle(5, 5, Color.WHITE, Color.BLACK), balloonPositioner, null);
+			}
+		});
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (positionings > 0) {
+			System.out.printf("%n%s: %.3f preferred size requests on the contents per call%n", positioner, (double) contents.requests / positionings);
+		}
+		HeadlessHost.onEdt(new Runnable() {
+			public void run() {
+				balloon.closeBalloon();
+				host.dispose();
+			}
+		});
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public BalloonTip determineAndSetLocation() {
+		HeadlessHost.onEdt(positionBatch);
+		return balloon;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public BalloonTip moveWithoutFlipping() {
+		HeadlessHost.onEdt(moveBatch);
+		return balloon;
+	}
+
+	/*
+	 * Creates one of the positioners
+	 */
+	static BalloonTipPositioner createPositioner(String name) {
+		if (name.equals("LeftAbove")) {
+			return new LeftAbovePositioner(20, 20);
+		} else if (name.equals("LeftBelow")) {
+			return new LeftBelowPositioner(20, 20);
+		} else if (name.equals("RightAbove")) {
+			return new RightAbovePositioner(20, 20);
+		} else if (name.equals("RightBelow")) {
+			return new RightBelowPositioner(20, 20);
+		} else if (name.equals("Centered")) {
+			return new CenteredPositioner(20);
+		}
+		throw new IllegalArgumentException("Unknown positioner: " + name);
+	}
+
+	/*
+	 * A label that counts how often its preferred size is requested
+	 */
+	private static final class CountingLabel extends JLabel {
+		private static final long serialVersionUID = -2958131470592271386L;
+		private long requests = 0;
+
+		private CountingLabel(String text) {
+			super(text);
+		}
+
+		public Dimension getPreferredSize() {
+			++requests;
+			return super.getPreferredSize();
+		}
+	}
+}
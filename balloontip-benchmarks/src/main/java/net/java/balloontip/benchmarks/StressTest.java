@@ -0,0 +1,359 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip.benchmarks;
+
+import java.awt.Color;
+import java.awt.GridLayout;
+import java.awt.Point;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
+import javax.swing.JTree;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+
+import net.java.balloontip.BalloonTip;
+import net.java.balloontip.BalloonTip.AttachLocation;
+import net.java.balloontip.BalloonTip.Orientation;
+import net.java.balloontip.ListItemBalloonTip;
+import net.java.balloontip.TableCellBalloonTip;
+import net.java.balloontip.TreeNodeBalloonTip;
+import net.java.balloontip.styles.BalloonTipStyle;
+import net.java.balloontip.styles.EdgedBalloonStyle;
+
+/**
+ * Simulates an application with thousands of live balloon tips, without a display
+ * A tabbed pane holds a JTable, a JTree, a JList and a scroll pane with plain components, each with as many balloon tips.
+ * The test then randomly scrolls, resizes the window, switches tabs and modifies the models, such that the balloon tips
+ * are driven through their usual listeners. Afterwards, it reports how long the event dispatch thread needed to handle
+ * each step (including any passes the step deferred), how much it allocated, and the retained heap per balloon tip.
+ * Usage: java -Djava.awt.headless=true -cp benchmarks.jar net.java.balloontip.benchmarks.StressTest [balloons per tab] [steps] [seed]
+ * (The test also runs on a regular (or Xvfb) display, as it never shows an actual window.)
+ * @author Tim Molderez
+ */
+public final class StressTest {
+	private final int balloonsPerTab;
+	private final Random random;
+
+	private HeadlessHost host;
+	private JTabbedPane tabs;
+	private DefaultTableModel tableModel;
+	private DefaultListModel<String> listModel;
+	private DefaultTreeModel treeModel;
+	private DefaultMutableTreeNode treeRoot;
+	private final ArrayList<JScrollPane> scrollPanes = new ArrayList<JScrollPane>();
+	private final ArrayList<BalloonTip> balloons = new ArrayList<BalloonTip>();
+
+	/**
+	 * Constructor
+	 * @param balloonsPerTab	number of balloon tips in each tab
+	 * @param seed				seed for the random steps, such that runs can be repeated
+	 */
+	public StressTest(int balloonsPerTab, long seed) {
+		this.balloonsPerTab = balloonsPerTab;
+		this.random = new Random(seed);
+	}
+
+	public static void main(String[] args) {
+		int balloonsPerTab = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+		new StressTest(balloonsPerTab, seed).run(steps);
+		System.exit(0);
+	}
+
+	/**
+	 * Builds the component hierarchy with its balloon tips, runs the random steps and prints the report
+	 * @param steps		number of random steps
+	 */
+	public void run(int steps) {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		HeadlessHost.onEdt(new Runnable() {
+			public void run() {
+				buildHierarchy();
+			}
+		});
+		long heapWithoutBalloons = usedHeap(memory);
+		long start = System.nanoTime();
+		HeadlessHost.onEdt(new Runnable() {
+			public void run() {
+				attachBalloons();
+			}
+		});
+		waitUntilIdle();
+		long creationTime = System.nanoTime() - start;
+		long heapWithBalloons = usedHeap(memory);
+
+		// Warm up, such that the JIT doesn't dominate the latencies
+		long[] latencies = new long[steps];
+		runSteps(Math.min(steps, 500), latencies);
+
+		long edtAllocatedBefore = edtAllocatedBytes();
+		start = System.nanoTime();
+		runSteps(steps, latencies);
+		long duration = System.nanoTime() - start;
+		long edtAllocated = edtAllocatedBefore < 0 ? -1 : edtAllocatedBytes() - edtAllocatedBefore;
+
+		int live = countLiveBalloons();
+		Arrays.sort(latencies);
+		System.out.println("Balloon tips:            " + balloons.size() + " created, " + live + " still open");
+		System.out.println("Creation time:           " + (creationTime / 1000000) + " ms");
+		System.out.println("Steps:                   " + steps + " in " + (duration / 1000000) + " ms");
+		System.out.println("EDT latency (us):        p50=" + percentile(latencies, 0.5) + " p90=" + percentile(latencies, 0.9)
+				+ " p99=" + percentile(latencies, 0.99) + " max=" + latencies[latencies.length - 1] / 1000);
+		if (edtAllocated >= 0) {
+			System.out.println("EDT allocation rate:     " + (edtAllocated * 1000 / Math.max(1, duration)) + " MB/s, "
+					+ (edtAllocated / steps / 1024) + " KB/step");
+		} else {
+			System.out.println("EDT allocation rate:     not supported by this JVM");
+		}
+		System.out.println("Retained heap/balloon:   " + ((heapWithBalloons - heapWithoutBalloons) / balloons.size()) + " bytes");
+
+		HeadlessHost.onEdt(new Runnable() {
+			public void run() {
+				for (BalloonTip balloon : balloons) {
+					balloon.closeBalloon();
+				}
+				host.dispose();
+			}
+		});
+	}
+
+	/*
+	 * Builds the tabs: a table, a tree, a list and a scroll pane with plain components
+	 */
+	private void buildHierarchy() {
+		tabs = new JTabbedPane();
+
+		tableModel = new DefaultTableModel(new String[] {"Name", "Value", "Comment"}, 0);
+		for (int i = 0; i < balloonsPerTab * 2; ++i) {
+			tableModel.addRow(new Object[] {"Row " + i, Integer.valueOf(i), "-"});
+		}
+		JTable table = new JTable(tableModel);
+		table.setAutoCreateRowSorter(true);
+		addTab("Table", table);
+
+		treeRoot = new DefaultMutableTreeNode("Root");
+		for (int i = 0; i < balloonsPerTab; i += 20) {
+			DefaultMutableTreeNode group = new DefaultMutableTreeNode("Group " + i);
+			for (int j = i; j < Math.min(i + 20, balloonsPerTab); ++j) {
+				group.add(new DefaultMutableTreeNode("Node " + j));
+			}
+			treeRoot.add(group);
+		}
+		treeModel = new DefaultTreeModel(treeRoot);
+		JTree tree = new JTree(treeModel);
+		for (int row = tree.getRowCount() - 1; row >= 0; --row) {
+			tree.expandRow(row);
+		}
+		addTab("Tree", tree);
+
+		listModel = new DefaultListModel<String>();
+		for (int i = 0; i < balloonsPerTab * 2; ++i) {
+			listModel.addElement("Item " + i);
+		}
+		addTab("List", new JList<String>(listModel));
+
+		JPanel panel = new JPanel(new GridLayout(0, 4, 10, 30));
+		for (int i = 0; i < balloonsPerTab; ++i) {
+			panel.add(new JLabel("Label " + i));
+		}
+		addTab("Panel", panel);
+
+		host = new HeadlessHost(tabs, 1024, 768);
+	}
+
+	/*
+	 * Attaches balloon tips to every other table row, every tree leaf, every other list item and every label
+	 */
+	private void attachBalloons() {
+		BalloonTipStyle style = new EdgedBalloonStyle(Color.WHITE, Color.BLUE);
+
+		JTable table = (JTable) scrollPanes.get(0).getViewport().getView();
+		for (int i = 0; i < balloonsPerTab; ++i) {
+			balloons.add(new TableCellBalloonTip(table, new JLabel("Cell " + i), i * 2, 2, style,
+					Orientation.LEFT_ABOVE, AttachLocation.ALIGNED, 15, 10, false));
+		}
+
+		JTree tree = (JTree) scrollPanes.get(1).getViewport().getView();
+		for (int i = 0; i < treeRoot.getChildCount(); ++i) {
+			DefaultMutableTreeNode group = (DefaultMutableTreeNode) treeRoot.getChildAt(i);
+			for (int j = 0; j < group.getChildCount(); ++j) {
+				TreePath path = new TreePath(((DefaultMutableTreeNode) group.getChildAt(j)).getPath());
+				balloons.add(new TreeNodeBalloonTip(tree, new JLabel("Node"), path, style,
+						Orientation.RIGHT_ABOVE, AttachLocation.ALIGNED, 15, 10, false));
+			}
+		}
+
+		JList<?> list = (JList<?>) scrollPanes.get(2).getViewport().getView();
+		for (int i = 0; i < balloonsPerTab; ++i) {
+			balloons.add(new ListItemBalloonTip(list, new JLabel("Item " + i), i * 2, style,
+					Orientation.LEFT_BELOW, AttachLocation.ALIGNED, 15, 10, false));
+		}
+
+		JPanel panel = (JPanel) scrollPanes.get(3).getViewport().getView();
+		for (int i = 0; i < panel.getComponentCount(); ++i) {
+			balloons.add(new BalloonTip((JComponent) panel.getComponent(i), new JLabel("Label " + i), style,
+					Orientation.LEFT_ABOVE, AttachLocation.ALIGNED, 15, 10, false));
+		}
+	}
+
+	/*
+	 * Runs a number of random steps, and records how long the event dispatch thread needed for each one
+	 */
+	private void runSteps(int steps, long[] latencies) {
+		for (int i = 0; i < steps; ++i) {
+			final int action = random.nextInt(4);
+			final int a = random.nextInt(1 << 20);
+			final int b = random.nextInt(1 << 20);
+			long start = System.nanoTime();
+			HeadlessHost.onEdt(new Runnable() {
+				public void run() {
+					step(action, a, b);
+				}
+			});
+			waitUntilIdle();
+			latencies[i] = System.nanoTime() - start;
+		}
+	}
+
+	/*
+	 * Performs one step (on the event dispatch thread)
+	 * @param action	which kind of step
+	 * @param a			random number, used by the step
+	 * @param b			random number, used by the step
+	 */
+	private void step(int action, int a, int b) {
+		switch (action) {
+		case 0:
+			// Scroll the current tab
+			JScrollPane scrollPane = scrollPanes.get(tabs.getSelectedIndex());
+			int maxY = Math.max(0, scrollPane.getViewport().getView().getHeight() - scrollPane.getViewport().getHeight());
+			scrollPane.getViewport().setViewPosition(new Point(0, maxY == 0 ? 0 : a % maxY));
+			break;
+		case 1:
+			// Resize the window
+			host.resize(600 + a % 600, 400 + b % 500);
+			break;
+		case 2:
+			// Switch tabs
+			tabs.setSelectedIndex(a % tabs.getTabCount());
+			break;
+		default:
+			// Insert a row/item/node and remove it again, which moves all balloon tips after it twice
+			int row = a % tableModel.getRowCount();
+			tableModel.insertRow(row, new Object[] {"New row", Integer.valueOf(-1), "-"});
+			tableModel.removeRow(row);
+
+			int index = b % listModel.getSize();
+			listModel.add(index, "New item");
+			listModel.remove(index);
+
+			DefaultMutableTreeNode group = (DefaultMutableTreeNode) treeRoot.getChildAt(a % treeRoot.getChildCount());
+			DefaultMutableTreeNode node = new DefaultMutableTreeNode("New node");
+			treeModel.insertNodeInto(node, group, b % (group.getChildCount() + 1));
+			treeModel.removeNodeFromParent(node);
+			break;
+		}
+	}
+
+	/*
+	 * Adds a tab, containing the given component in a scroll pane
+	 */
+	private void addTab(String title, JComponent component) {
+		JScrollPane scrollPane = new JScrollPane(component);
+		scrollPanes.add(scrollPane);
+		tabs.addTab(title, scrollPane);
+	}
+
+	/*
+	 * Counts the balloon tips that are still open (balloon tips are closed if what they're attached to is removed)
+	 */
+	private int countLiveBalloons() {
+		final int[] count = new int[1];
+		HeadlessHost.onEdt(new Runnable() {
+			public void run() {
+				for (BalloonTip balloon : balloons) {
+					if (balloon.getParent() != null) {
+						++count[0];
+					}
+				}
+			}
+		});
+		return count[0];
+	}
+
+	/*
+	 * Waits until the event dispatch thread has handled everything that was queued so far,
+	 * including the deferred passes those events queued in turn
+	 */
+	private static void waitUntilIdle() {
+		Runnable nothing = new Runnable() {
+			public void run() {}
+		};
+		HeadlessHost.onEdt(nothing);
+		HeadlessHost.onEdt(nothing);
+	}
+
+	/*
+	 * Get the number of bytes the event dispatch thread has allocated so far (or -1 if the JVM can't tell)
+	 */
+	private static long edtAllocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)
+				|| !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		final long[] id = new long[1];
+		HeadlessHost.onEdt(new Runnable() {
+			public void run() {
+				id[0] = Thread.currentThread().getId();
+			}
+		});
+		return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(id[0]);
+	}
+
+	/*
+	 * Get the heap that is in use, after collecting the garbage
+	 */
+	private static long usedHeap(MemoryMXBean memory) {
+		for (int i = 0; i < 5; ++i) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	/*
+	 * Get a percentile of the sorted latencies (in microseconds)
+	 */
+	private static long percentile(long[] sorted, double fraction) {
+		int index = (int) Math.min(sorted.length - 1, Math.round(fraction * (sorted.length - 1)));
+		return sorted[index] / 1000;
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip.benchmarks;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JLabel;
+
+import net.java.balloontip.BalloonTip;
+import net.java.balloontip.BalloonTip.AttachLocation;
+import net.java.balloontip.BalloonTip.Orientation;
+import net.java.balloontip.styles.BalloonTipStyle;
+import net.java.balloontip.styles.EdgedBalloonStyle;
+import net.java.balloontip.styles.IsometricBalloonStyle;
+import net.java.balloontip.styles.MinimalBalloonStyle;
+import net.java.balloontip.styles.ModernBalloonStyle;
+import net.java.balloontip.styles.RoundedBalloonStyle;
+import net.java.balloontip.styles.TexturedBalloonStyle;
+import net.java.balloontip.styles.ToolTipBalloonStyle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long each style takes to paint a balloon tip's border onto an offscreen image
+ * Painting only reads the balloon tip's geometry, so it's done on the benchmark thread itself.
+ * @author Tim Molderez
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class StyleBenchmark {
+	@Param({"Edged", "Isometric", "Minimal", "Modern", "Rounded", "Textured", "ToolTip"})
+	public String style;
+
+	private HeadlessHost host;
+	private BalloonTip balloon;
+	private BalloonTipStyle balloonStyle;
+	private BufferedImage image;
+	private Graphics2D graphics;
+	private int width;
+	private int height;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		balloonStyle = createStyle(style);
+		HeadlessHost.onEdt(new Runnable() {
+			public void run() {
+				host = new HeadlessHost();
+				balloon = new BalloonTip(host.getAttachedComponent(), new JLabel("A benchmark balloon tip"), balloonStyle,
+						Orientation.LEFT_ABOVE, AttachLocation.ALIGNED, 20, 20, false);
+				balloon.validate();
+				width = balloon.getWidth();
+				height = balloon.getHeight();
+			}
+		});
+		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		graphics = image.createGraphics();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		graphics.dispose();
+		HeadlessHost.onEdt(new Runnable() {
+			public void run() {
+				balloon.closeBalloon();
+				host.dispose();
+			}
+		});
+	}
+
+	@Benchmark
+	public BufferedImage paintBorder() {
+		balloonStyle.paintBorder(balloon, graphics, 0, 0, width, height);
+		return image;
+	}
+
+	/*
+	 * Creates one of the styles, with the same settings as in the examples
+	 * (The textured style uses a copy of the examples' background pattern.)
+	 */
+	static BalloonTipStyle createStyle(String name) throws IOException {
+		if (name.equals("Edged")) {
+			return new EdgedBalloonStyle(Color.WHITE, Color.BLUE);
+		} else if (name.equals("Isometric")) {
+			return new IsometricBalloonStyle(Color.WHITE, Color.BLUE, 5);
+		} else if (name.equals("Minimal")) {
+			return new MinimalBalloonStyle(new Color(100, 100, 200, 180), 8);
+		} else if (name.equals("Modern")) {
+			ModernBalloonStyle style = new ModernBalloonStyle(10, 10, Color.WHITE, Color.GRAY, Color.RED);
+			style.setBorderThickness(3);
+			style.enableAntiAliasing(true);
+			return style;
+		} else if (name.equals("Rounded")) {
+			return new RoundedBalloonStyle(5, 5, Color.WHITE, Color.BLACK);
+		} else if (name.equals("Textured")) {
+			return new TexturedBalloonStyle(5, 5, StyleBenchmark.class.getResource("bgPattern.png"), Color.BLACK);
+		} else if (name.equals("ToolTip")) {
+			return new ToolTipBalloonStyle(Color.YELLOW, Color.BLACK);
+		}
+		throw new IllegalArgumentException("Unknown style: " + name);
+	}
+}
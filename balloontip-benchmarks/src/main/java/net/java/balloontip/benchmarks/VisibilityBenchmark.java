@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip.benchmarks;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+
+import net.java.balloontip.BalloonTip;
+import net.java.balloontip.styles.RoundedBalloonStyle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to update a balloon tip's visibility criteria
+ * Setting a criterion to the value it already has is what happens most often (e.g. on every scroll event),
+ * while toggling a criterion actually shows/hides the balloon tip. Updates are done on the event dispatch thread,
+ * in batches of BATCH updates.
+ * @author Tim Molderez
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class VisibilityBenchmark {
+	static final int BATCH = 10000;
+
+	/*
+	 * A balloon tip that gives the benchmark access to its visibility control
+	 */
+	static final class ProbeBalloonTip extends BalloonTip {
+		private static final int CRITERION_BENCHMARK = registerVisibilityCriterion("benchmark");
+
+		ProbeBalloonTip(JComponent attachedComponent) {
+			super(attachedComponent, new JLabel("A benchmark balloon tip"), new RoundedBalloonStyle(5, 5, Color.WHITE, Color.BLACK), false);
+		}
+
+		void setCriterion(boolean value) {
+			visibilityControl.setCriterionAndUpdate(CRITERION_BENCHMARK, value);
+		}
+
+		void setNamedCriterion(boolean value) {
+			visibilityControl.setCriterionAndUpdate("benchmark", Boolean.valueOf(value));
+		}
+
+		private static final long serialVersionUID = 4151466870478453520L;
+	}
+
+	private HeadlessHost host;
+	private ProbeBalloonTip balloon;
+
+	private final Runnable unchangedBatch = new Runnable() {
+		public void run() {
+			for (int i = 0; i < BATCH; ++i) {
+				balloon.setCriterion(true);
+			}
+		}
+	};
+
+	private final Runnable namedBatch = new Runnable() {
+		public void run() {
+			for (int i = 0; i < BATCH; ++i) {
+				balloon.setNamedCriterion(true);
+			}
+		}
+	};
+
+	private final Runnable toggleBatch = new Runnable() {
+		public void run() {
+			for (int i = 0; i < BATCH; ++i) {
+				balloon.setCriterion((i & 1) != 0);
+			}
+		}
+	};
+
+	@Setup(Level.Trial)
+	public void setup() {
+		HeadlessHost.onEdt(new Runnable() {
+			public void run() {
+				host = new HeadlessHost();
+				balloon = new ProbeBalloonTip(host.getAttachedComponent());
+			}
+		});
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		HeadlessHost.onEdt(new Runnable() {
+			public void run() {
+				balloon.closeBalloon();
+				host.dispose();
+			}
+		});
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public BalloonTip setUnchangedCriterion() {
+		HeadlessHost.onEdt(unchangedBatch);
+		return balloon;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public BalloonTip setNamedCriterion() {
+		HeadlessHost.onEdt(namedBatch);
+		return balloon;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public BalloonTip toggleCriterion() {
+		HeadlessHost.onEdt(toggleBatch);
+		return balloon;
+	}
+}
@@ -35,7 +35,7 @@ public class SimpleTipPositioner extends BalloonTipPositioner {
 	}
 
 	protected void onStyleChange() {
-		balloonTip.getStyle().setHorizontalOffset(20);
-		balloonTip.getStyle().setVerticalOffset(20);
+		balloonTip.getGeometry().setHorizontalOffset(20);
+		balloonTip.getGeometry().setVerticalOffset(20);
 	}
 }
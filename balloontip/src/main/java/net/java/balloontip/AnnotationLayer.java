@@ -0,0 +1,310 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.awt.Rectangle;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import net.java.balloontip.BalloonTip.AttachLocation;
+import net.java.balloontip.BalloonTip.Orientation;
+import net.java.balloontip.styles.BalloonTipStyle;
+
+/**
+ * Shows text annotations as balloon tips on the items of a large component (e.g. the cells of a JTable)
+ * The annotations themselves are plain data; actual balloon tips are only created for the annotations whose item
+ * is within the component's visible area. When the user scrolls, balloon tips that go out of view are hidden
+ * and reused for the annotations that come into view, so the number of balloon tips is bounded by the
+ * number of annotations that are visible at the same time, rather than the total number of annotations.
+ * Only a limited number of hidden balloon tips is kept around for reuse; the others are closed.
+ * All balloon tips of a layer share the same style.
+ * (Like Swing components, this class should only be used on the event dispatch thread.)
+ * @param <K>	identifies an annotated item
+ * @author Tim Molderez
+ */
+public abstract class AnnotationLayer<K> {
+	protected final JComponent component;
+
+	private final BalloonTipStyle style;
+	private final Orientation orientation;
+	private final AttachLocation attachLocation;
+	private final int horizontalOffset;
+	private final int verticalOffset;
+
+	private final HashMap<K, CustomBalloonTip> shown = new HashMap<K, CustomBalloonTip>();	// Balloon tips of the annotations that are in view
+	private final ArrayList<CustomBalloonTip> spare = new ArrayList<CustomBalloonTip>();	// Hidden balloon tips, ready to be reused (most recently hidden last)
+	private int maximumSpareCount = 16;
+	private final LinkedHashMap<K, String> visible = new LinkedHashMap<K, String>();		// Reused in each refresh
+	private final JViewport viewport;
+	private boolean scheduled = false;		// Is there a refresh waiting on the event queue?
+	private boolean disposed = false;
+
+	private final Runnable refreshTask = new Runnable() {
+		public void run() {
+			refresh();
+		}
+	};
+
+	// Refresh when the component is scrolled or resized
+	private final ChangeListener viewportListener = new ChangeListener() {
+		public void stateChanged(ChangeEvent e) {
+			refreshLater();
+		}
+	};
+	private final ComponentAdapter componentListener = new ComponentAdapter() {
+		public void componentResized(ComponentEvent e) {
+			refreshLater();
+		}
+		public void componentShown(ComponentEvent e) {
+			refreshLater();
+		}
+	};
+
+	/**
+	 * Constructor
+	 * (If the component is shown in a JScrollPane, it should already be added to it.)
+	 * @param component				the component whose items are annotated (may not be null)
+	 * @param style					the looks of the annotations' balloon tips (may not be null)
+	 * @param orientation			orientation of the balloon tips
+	 * @param attachLocation		location of the balloon's tip within each annotated item
+	 * @param horizontalOffset		horizontal offset for the balloon's tip
+	 * @param verticalOffset		vertical offset for the balloon's tip
+	 */
+	protected AnnotationLayer(JComponent component, BalloonTipStyle style, Orientation orientation, AttachLocation attachLocation,
+			int horizontalOffset, int verticalOffset) {
+		this.component = component;
+		this.style = style;
+		this.orientation = orientation;
+		this.attachLocation = attachLocation;
+		this.horizontalOffset = horizontalOffset;
+		this.verticalOffset = verticalOffset;
+
+		viewport = (component.getParent() instanceof JViewport) ? (JViewport) component.getParent() : null;
+		if (viewport != null) {
+			viewport.addChangeListener(viewportListener);
+		}
+		component.addComponentListener(componentListener);
+	}
+
+	/**
+	 * Get the number of annotations in this layer
+	 * @return		number of annotations
+	 */
+	public abstract int getAnnotationCount();
+
+	/**
+	 * Removes all annotations from this layer
+	 */
+	public abstract void clearAnnotations();
+
+	/**
+	 * Get the number of balloon tips that are currently shown
+	 * @return		number of annotations that are in view
+	 */
+	public int getShownCount() {
+		return shown.size();
+	}
+
+	/**
+	 * Get the number of hidden balloon tips that are kept around to be reused
+	 * @return		number of spare balloon tips
+	 */
+	public int getSpareCount() {
+		return spare.size();
+	}
+
+	/**
+	 * Set the maximum number of hidden balloon tips that are kept around to be reused
+	 * (If there currently are more, the surplus is closed right away.)
+	 * @param maximumSpareCount		maximum number of spare balloon tips
+	 */
+	public void setMaximumSpareCount(int maximumSpareCount) {
+		if (maximumSpareCount < 0) {
+			throw new IllegalArgumentException("The maximum number of spare balloon tips cannot be negative");
+		}
+		this.maximumSpareCount = maximumSpareCount;
+		trimSpares();
+	}
+
+	/**
+	 * Get the maximum number of hidden balloon tips that are kept around to be reused
+	 * @return		maximum number of spare balloon tips
+	 */
+	public int getMaximumSpareCount() {
+		return maximumSpareCount;
+	}
+
+	/**
+	 * Retrieve the balloon tip that currently shows an annotation
+	 * Don't hold on to it; it's reused for another annotation once this one goes out of view.
+	 * @param key	the annotated item
+	 * @return		the balloon tip, or null if the annotation currently isn't in view
+	 */
+	public BalloonTip getBalloonTip(K key) {
+		return shown.get(key);
+	}
+
+	/**
+	 * Updates the balloon tips such that they match the annotations within the component's visible area
+	 * (The layer does this by itself whenever the component is scrolled or its items change.)
+	 */
+	public void refresh() {
+		scheduled = false;
+		if (disposed) {
+			return;
+		}
+
+		visible.clear();
+		Rectangle visibleRect = component.getVisibleRect();
+		if (getAnnotationCount() > 0 && !visibleRect.isEmpty()) {
+			collectVisible(visibleRect, visible);
+		}
+
+		// Balloon tips whose annotation went out of view become spares
+		Iterator<Map.Entry<K, CustomBalloonTip>> iterator = shown.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<K, CustomBalloonTip> entry = iterator.next();
+			if (!visible.containsKey(entry.getKey())) {
+				entry.getValue().setVisible(false);
+				spare.add(entry.getValue());
+				iterator.remove();
+			}
+		}
+
+		// Show the annotations that are in view, reusing the spare balloon tips first
+		for (Map.Entry<K, String> entry : visible.entrySet()) {
+			Rectangle bounds = getItemBounds(entry.getKey());
+			if (bounds == null) {
+				continue;
+			}
+			CustomBalloonTip balloon = shown.get(entry.getKey());
+			boolean reused = false;
+			if (balloon == null) {
+				if (spare.isEmpty()) {
+					shown.put(entry.getKey(), new CustomBalloonTip(component, new JLabel(entry.getValue()), bounds, style, orientation,
+							attachLocation, horizontalOffset, verticalOffset, false));
+					continue;
+				}
+				balloon = spare.remove(spare.size() - 1);
+				shown.put(entry.getKey(), balloon);
+				reused = true;
+			}
+			if (!entry.getValue().equals(((JLabel) balloon.getContents()).getText())) {
+				balloon.setTextContents(entry.getValue());
+			}
+			if (!bounds.equals(balloon.getOffset())) {
+				balloon.setOffset(bounds);
+			}
+			if (reused) {
+				balloon.setVisible(true);
+			}
+		}
+		visible.clear();
+		trimSpares();
+	}
+
+	/**
+	 * Closes all balloon tips of this layer, and stops listening to the component
+	 * (The layer cannot be used anymore afterwards.)
+	 */
+	public void dispose() {
+		disposed = true;
+		if (viewport != null) {
+			viewport.removeChangeListener(viewportListener);
+		}
+		component.removeComponentListener(componentListener);
+		for (CustomBalloonTip balloon : shown.values()) {
+			balloon.closeBalloon();
+		}
+		for (CustomBalloonTip balloon : spare) {
+			balloon.closeBalloon();
+		}
+		shown.clear();
+		spare.clear();
+	}
+
+	/**
+	 * Find the annotations whose item intersects with the component's visible area
+	 * @param visibleRect	the visible area, in the component's coordinates
+	 * @param result		add the annotations that are in view to this map
+	 */
+	protected abstract void collectVisible(Rectangle visibleRect, Map<K, String> result);
+
+	/**
+	 * Get the bounds of an annotated item
+	 * @param key		the annotated item
+	 * @return			its bounds, in the component's coordinates (or null if the item currently isn't shown)
+	 */
+	protected abstract Rectangle getItemBounds(K key);
+
+	/**
+	 * Refreshes the layer in a deferred pass on the event dispatch thread
+	 * (If several events call for a refresh before that pass, the layer is still only refreshed once.)
+	 */
+	protected void refreshLater() {
+		if (!scheduled && !disposed) {
+			scheduled = true;
+			SwingUtilities.invokeLater(refreshTask);
+		}
+	}
+
+	/*
+	 * Closes the spare balloon tips that were hidden the longest, until there are no more than the maximum
+	 */
+	private void trimSpares() {
+		int surplus = spare.size() - maximumSpareCount;
+		if (surplus > 0) {
+			List<CustomBalloonTip> closed = spare.subList(0, surplus);
+			for (CustomBalloonTip balloon : closed) {
+				balloon.closeBalloon();
+			}
+			closed.clear();
+		}
+	}
+
+	/**
+	 * Moves all entries with a key from a given index onwards, e.g. when rows have been inserted or removed
+	 * @param map		the map, with indices as its keys
+	 * @param from		entries with this index or higher are moved
+	 * @param delta		the number of positions the entries are moved
+	 */
+	protected static <V> void shiftIndices(TreeMap<Integer, V> map, int from, int delta) {
+		SortedMap<Integer, V> tail = map.tailMap(from);
+		if (tail.isEmpty() || delta == 0) {
+			return;
+		}
+		Integer[] keys = tail.keySet().toArray(new Integer[tail.size()]);
+		// Move the entries in an order such that no entry overwrites another one
+		if (delta > 0) {
+			for (int i = keys.length - 1; i >= 0; --i) {
+				map.put(keys[i] + delta, map.remove(keys[i]));
+			}
+		} else {
+			for (int i = 0; i < keys.length; ++i) {
+				map.put(keys[i] + delta, map.remove(keys[i]));
+			}
+		}
+	}
+}
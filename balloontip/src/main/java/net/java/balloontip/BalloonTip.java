@@ -12,7 +12,10 @@ package net.java.balloontip;
 import java.awt.AlphaComposite;
 import java.awt.CardLayout;
 import java.awt.Color;
+import java.awt.Component;
+import java.awt.Composite;
 import java.awt.Container;
+import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GridBagConstraints;
@@ -20,21 +23,24 @@ import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.Transparency;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Vector;
 
 import javax.swing.BorderFactory;
 import javax.swing.Icon;
-import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
@@ -43,6 +49,7 @@ import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
 import javax.swing.JViewport;
 import javax.swing.SwingUtilities;
+import javax.swing.border.Border;
 import javax.swing.event.AncestorEvent;
 import javax.swing.event.AncestorListener;
 import javax.swing.event.ChangeEvent;
@@ -54,6 +61,7 @@ import net.java.balloontip.positioners.LeftAbovePositioner;
 import net.java.balloontip.positioners.LeftBelowPositioner;
 import net.java.balloontip.positioners.RightAbovePositioner;
 import net.java.balloontip.positioners.RightBelowPositioner;
+import net.java.balloontip.styles.BalloonTipGeometry;
 import net.java.balloontip.styles.BalloonTipStyle;
 import net.java.balloontip.styles.RoundedBalloonStyle;
 
@@ -75,42 +83,108 @@ public class BalloonTip extends JPanel {
 	protected JButton closeButton = null;
 	protected VisibilityControl visibilityControl = new VisibilityControl();
 	protected BalloonTipStyle style;					// Determines the balloon's looks
+	private final BalloonTipGeometry geometry = new BalloonTipGeometry();	// The offsets and orientation of this balloon tip; set by its positioner
 	protected int padding = 0;							// Amount of pixels padding around the contents
 	protected float opacity = 1.0f;						// The balloon tip's opacity (1.0 is opaque)
+	private AlphaComposite opacityComposite = null;		// The composite used to paint the balloon tip at its current opacity
+	private boolean snapshotPainting = false;			// If true, the balloon tip is painted from a snapshot
+	private BufferedImage snapshot = null;				// Off-screen image of the entire balloon tip (if snapshot painting is enabled)
+	private Dimension preferredSize = null;				// Cached preferred size of the balloon tip (null if it needs to be recomputed)
+	private boolean resizing = false;					// True while the balloon tip is changing its own bounds
 	protected BalloonTipPositioner positioner;			// Determines the balloon tip's position
 	protected JLayeredPane topLevelContainer = null;	// The balloon tip is drawn on this pane
 	protected JComponent attachedComponent;				// The balloon tip is attached to this component
-
-	private static Icon defaultCloseIcon  = new ImageIcon(BalloonTip.class.getResource("/net/java/balloontip/images/close_default.png"));
-	private static Icon rolloverCloseIcon = new ImageIcon(BalloonTip.class.getResource("/net/java/balloontip/images/close_rollover.png"));
-	private static Icon pressedCloseIcon  = new ImageIcon(BalloonTip.class.getResource("/net/java/balloontip/images/close_pressed.png"));
+	private BalloonTipPool pool = null;					// If not null, the balloon tip is returned to this pool once it's closed
+	private boolean released = false;					// True once the balloon tip was returned to its pool
+
+	// The default close button's icons are shared by all balloon tips, and are only decoded once they're first shown
+	private static Icon defaultCloseIcon  = new LazyImageIcon(BalloonTip.class.getResource("/net/java/balloontip/images/close_default.png"));
+	private static Icon rolloverCloseIcon = new LazyImageIcon(BalloonTip.class.getResource("/net/java/balloontip/images/close_rollover.png"));
+	private static Icon pressedCloseIcon  = new LazyImageIcon(BalloonTip.class.getResource("/net/java/balloontip/images/close_pressed.png"));
+	private static final Border closeButtonBorder = BorderFactory.createEmptyBorder(5, 5, 5, 5);
+
+	// Maps the name of each visibility criterion to its bit in VisibilityControl's bitmask
+	private static final HashMap<String, Integer> visibilityCriteria = new HashMap<String, Integer>();
+	/** Visibility criterion: the balloon tip is set to visible by the user (see setVisible()) */
+	protected static final int CRITERION_MANUAL = registerVisibilityCriterion("manual");
+	/** Visibility criterion: the balloon tip has contents */
+	protected static final int CRITERION_HAS_CONTENTS = registerVisibilityCriterion("hasContents");
+	/** Visibility criterion: the attached component is showing */
+	protected static final int CRITERION_ATTACHED_COMPONENT_SHOWING = registerVisibilityCriterion("attachedComponentShowing");
+	/** Visibility criterion: the tab containing the attached component is showing */
+	protected static final int CRITERION_TAB_SHOWING = registerVisibilityCriterion("tabShowing");
+	/** Visibility criterion: the balloon's tip is within the viewports the attached component is nested in */
+	protected static final int CRITERION_WITHIN_VIEWPORT = registerVisibilityCriterion("withinViewport");
 
 	// Only show a balloon tip when the component it's attached to is visible
 	private final ComponentListener componentListener = new ComponentListener() {
 		public void componentMoved(ComponentEvent e) {
-			refreshLocation();
+			long start = StallWatchdog.enter(BalloonTip.this, "componentMoved", e);
+			try {
+				invalidateViewportIndexes();
+				refreshLocationLater();
+			} finally {
+				StallWatchdog.exit(start);
+			}
 		}
 		public void componentResized(ComponentEvent e) {
-			/* We're assuming here that components can only resize when they are visible!
-			 * (If we would use isAttachedComponentShowing(), the JApplet test will fail.
-			 * Perhaps this indicates a bug in Component.isShowing() when using components in a JApplet..) */
-			visibilityControl.setCriterionAndUpdate("attachedComponentShowing",
-					attachedComponent.getWidth() > 0 && attachedComponent.getHeight() > 0);
-			refreshLocation();
+			long start = StallWatchdog.enter(BalloonTip.this, "componentResized", e);
+			try {
+				// Mark the balloon tip dirty first, such that it's repositioned right away if it's about to become visible
+				invalidateViewportIndexes();
+				refreshLocationLater();
+				/* We're assuming here that components can only resize when they are visible!
+				 * (If we would use isAttachedComponentShowing(), the JApplet test will fail.
+				 * Perhaps this indicates a bug in Component.isShowing() when using components in a JApplet..) */
+				visibilityControl.setCriterionAndUpdate(CRITERION_ATTACHED_COMPONENT_SHOWING, 
+						attachedComponent.getWidth() > 0 && attachedComponent.getHeight() > 0);
+			} finally {
+				StallWatchdog.exit(start);
+			}
 		}
 		public void componentShown(ComponentEvent e) {
-			visibilityControl.setCriterionAndUpdate("attachedComponentShowing",isAttachedComponentShowing());
-			refreshLocation();
+			long start = StallWatchdog.enter(BalloonTip.this, "componentShown", e);
+			try {
+				invalidateViewportIndexes();
+				refreshLocationLater();
+				visibilityControl.setCriterionAndUpdate(CRITERION_ATTACHED_COMPONENT_SHOWING, isAttachedComponentShowing());
+			} finally {
+				StallWatchdog.exit(start);
+			}
 		}
 		public void componentHidden(ComponentEvent e) {
-			visibilityControl.setCriterionAndUpdate("attachedComponentShowing",false);
+			long start = StallWatchdog.enter(BalloonTip.this, "componentHidden", e);
+			try {
+				visibilityControl.setCriterionAndUpdate(CRITERION_ATTACHED_COMPONENT_SHOWING, false);
+			} finally {
+				StallWatchdog.exit(start);
+			}
 		}
 	};
 
 	// Adjust the balloon tip when the top-level container is resized
 	private final ComponentAdapter topLevelContainerListener = new ComponentAdapter() {
 		public void componentResized(ComponentEvent e) {
-			refreshLocation();
+			long start = StallWatchdog.enter(BalloonTip.this, "topLevelContainerResized", e);
+			try {
+				refreshLocationLater();
+			} finally {
+				StallWatchdog.exit(start);
+			}
+		}
+	};
+
+	// Report the balloon tip to the LeakDetector if its attached component is disposed of without closing the balloon tip
+	private final HierarchyListener hierarchyListener = new HierarchyListener() {
+		public void hierarchyChanged(HierarchyEvent e) {
+			long start = StallWatchdog.enter(BalloonTip.this, "hierarchyChanged", e);
+			try {
+				if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 && !attachedComponent.isDisplayable()) {
+					LeakDetector.attachedComponentDisposed(BalloonTip.this);
+				}
+			} finally {
+				StallWatchdog.exit(start);
+			}
 		}
 	};
 
@@ -197,6 +271,7 @@ public class BalloonTip extends JPanel {
 	 * 						If the contents is null, the balloon tip will not be shown
 	 */
 	public void setContents(JComponent contents) {
+		checkNotReleased();
 		JComponent oldContents = this.contents;
 		if (oldContents!=null) {
 			remove(this.contents);
@@ -206,13 +281,15 @@ public class BalloonTip extends JPanel {
 		if (contents!=null) {
 			setPadding(getPadding());
 			add(this.contents, new GridBagConstraints(0, 0, 1, 1, 1, 1, GridBagConstraints.WEST, GridBagConstraints.BOTH, new Insets(0, 0, 0, 0), 0, 0));
-			visibilityControl.setCriterionAndUpdate("hasContents", true);
+			visibilityControl.setCriterionAndUpdate(CRITERION_HAS_CONTENTS,  true);
 		} else {
-			visibilityControl.setCriterionAndUpdate("hasContents", false);
+			visibilityControl.setCriterionAndUpdate(CRITERION_HAS_CONTENTS,  false);
 		}
 
 		// Notify property listeners that the contents has changed
 		firePropertyChange("contents", oldContents, this.contents);
+		preferredSize = null;
+		revalidate();
 		refreshLocation();
 	}
 	
@@ -239,8 +316,10 @@ public class BalloonTip extends JPanel {
 	 * @param padding	the amount of padding in pixels
 	 */
 	public void setPadding(int padding) {
+		checkNotReleased();
 		this.padding=padding;
 		contents.setBorder(BorderFactory.createEmptyBorder(padding, padding, padding, padding));
+		preferredSize = null;
 		refreshLocation();
 	}
 
@@ -258,9 +337,12 @@ public class BalloonTip extends JPanel {
 	 * @param style			a BalloonTipStyle (may not be null)
 	 */
 	public void setStyle(BalloonTipStyle style) {
+		checkNotReleased();
 		BalloonTipStyle oldStyle = this.style;
 		this.style = style;
+		geometry.setFallback(style);
 		setBorder(this.style);
+		preferredSize = null;
 
 		// Notify property listeners that the style has changed
 		firePropertyChange("style", oldStyle, style);
@@ -275,13 +357,28 @@ public class BalloonTip extends JPanel {
 		return style;
 	}
 
+	/**
+	 * Get the balloon tip's geometry (the offsets of its tip and its orientation)
+	 * The geometry is determined by the balloon tip's positioner, and is used by the style to paint the balloon tip.
+	 * (It is cleared whenever the balloon tip gets a new positioner.)
+	 * @return				the balloon tip's geometry
+	 */
+	public BalloonTipGeometry getGeometry() {
+		return geometry;
+	}
+
 	/**
 	 * Set a new BalloonTipPositioner, repsonsible for the balloon tip's positioning
 	 * (Calling this method will fire a "positioner" property change event.)
 	 * @param positioner	a BalloonTipPositioner (may not be null)
 	 */
 	public void setPositioner(BalloonTipPositioner positioner) {
+		checkNotReleased();
 		BalloonTipPositioner oldPositioner = this.positioner;
+		if (oldPositioner != null && oldPositioner != positioner) {
+			oldPositioner.detachBalloonTip();
+			geometry.clear();
+		}
 		this.positioner = positioner;
 		this.positioner.setBalloonTip(this);
 
@@ -300,17 +397,33 @@ public class BalloonTip extends JPanel {
 
 	/**
 	 * If you want to permanently close the balloon, you can use this method.
-	 * (It will be called automatically once Java's garbage collector can clean up this balloon tip...)
+	 * (A balloon tip that isn't closed stays on its top-level container, even if its attached component is disposed of; see LeakDetector.)
 	 * Please note, you shouldn't use this instance anymore after calling this method!
 	 * (If you just want to hide the balloon tip, simply use setVisible(false);)
+	 * If the balloon tip was obtained from a BalloonTipPool, it is returned to that pool.
 	 */
 	public void closeBalloon() {
+		if (released) {
+			return;
+		}
 		forceSetVisible(false);
 		setCloseButton(null); // Remove the close button
 		for(MouseListener m : getMouseListeners()) {
 			removeMouseListener(m);
 		}
 		tearDownHelper();
+
+		if (pool != null) {
+			// Until it's reused, the balloon tip shouldn't keep its positioner, contents or attached component in memory
+			positioner.detachBalloonTip();
+			if (contents != null) { // (The contents may have been set to null)
+				remove(contents);
+				contents = null;
+			}
+			attachedComponent = null;
+			released = true;
+			pool.recycle(this);
+		}
 	}
 
 	/**
@@ -334,6 +447,8 @@ public class BalloonTip extends JPanel {
 			add(closeButton, new GridBagConstraints(1, 0, 1, 1, 0, 0, GridBagConstraints.NORTHEAST, GridBagConstraints.NONE, new Insets(0, 0, 0, 0), 0, 0));
 		}
 		
+		preferredSize = null;
+		revalidate();
 		refreshLocation();
 	}
 
@@ -376,7 +491,7 @@ public class BalloonTip extends JPanel {
 	 */
 	public static JButton getDefaultCloseButton() {
 		JButton button = new JButton();
-		button.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+		button.setBorder(closeButtonBorder);
 		button.setContentAreaFilled(false);
 		button.setIcon(defaultCloseIcon);
 		button.setRolloverIcon(rolloverCloseIcon);
@@ -431,6 +546,7 @@ public class BalloonTip extends JPanel {
 	 * @exception NullPointerException if parameter newComponent is null
 	 */
 	public void setAttachedComponent(JComponent newComponent) {
+		checkNotReleased();
 		JComponent oldComponent = this.attachedComponent;
 
 		tearDownHelper(); // Remove any listeners related to the old attached component
@@ -456,18 +572,21 @@ public class BalloonTip extends JPanel {
 	 * 						(may not be null)
 	 */
 	public void setTopLevelContainer(JLayeredPane tlc) {
+		checkNotReleased();
 		if (topLevelContainer != null) {
 			topLevelContainer.remove(this);
-			topLevelContainer.removeComponentListener(topLevelContainerListener);
+			ListenerHub.removeComponentListener(topLevelContainer, topLevelContainerListener);
+			BalloonTipRegistry.unregister(this);
 		}
 
 		this.topLevelContainer = tlc;
 		// We use the popup layer of the top level container (frame or dialog) to show the balloon tip
 	    topLevelContainer.setLayer(this, JLayeredPane.POPUP_LAYER);
 		// If the window is resized, we should check if the balloon still fits
-		topLevelContainer.addComponentListener(topLevelContainerListener);
+		ListenerHub.addComponentListener(topLevelContainer, topLevelContainerListener);
 		// Add the balloon tip to the top-level container (This must be the last step; see BALLOONTIP-10!)
 		topLevelContainer.add(this);
+		BalloonTipRegistry.register(this);
 	}
 
 	/**
@@ -490,11 +609,27 @@ public class BalloonTip extends JPanel {
 
 	/**
 	 * Refreshes the balloon tip's location
-	 * (Is able to update balloon tip's location even if the balloon tip is not shown.)
+	 * (Is able to update balloon tip's location even if the balloon tip is not shown.
+	 * Nothing happens if neither the attached component, the balloon tip's size nor the top-level container's size have changed.)
 	 */
 	public void refreshLocation() {
 		if (topLevelContainer!=null) {
-			positioner.determineAndSetLocation(getAttachedRectangle());
+			boolean measure = BalloonTipMetrics.isEnabled();
+			long start = measure ? System.nanoTime() : 0;
+			positioner.updateLocation(getAttachedRectangle());
+			if (measure) {
+				BalloonTipMetrics.record(BalloonTipMetrics.Metric.REFRESH_LOCATION, System.nanoTime() - start);
+			}
+		}
+	}
+
+	/*
+	 * Refreshes the balloon tip's location in the next pass of its top-level container's LayoutCoordinator
+	 * (If several events call for a refresh before that pass, the balloon tip is still only repositioned once.)
+	 */
+	protected void refreshLocationLater() {
+		if (topLevelContainer!=null) {
+			LayoutCoordinator.getInstance(topLevelContainer).markDirty(this);
 		}
 	}
 
@@ -504,8 +639,10 @@ public class BalloonTip extends JPanel {
 	 * @param opacity	the opacity, where 0.0f is completely invisible and 1.0f is opaque
 	 */
 	public void setOpacity(float opacity) {
-		this.opacity = opacity;
-		repaint();
+		if (this.opacity != opacity) {
+			this.opacity = opacity;
+			repaint();
+		}
 	}
 
 	/**
@@ -516,36 +653,172 @@ public class BalloonTip extends JPanel {
 		return this.opacity;
 	}
 
+	/**
+	 * Enable/disable snapshot painting
+	 * While enabled, the balloon tip (including its contents) is painted into an off-screen image only once.
+	 * Repaints then just draw this image at the balloon tip's current opacity, regardless of how complex the contents are.
+	 * This is meant for short animations, such as fading, during which the balloon tip's contents do not change.
+	 * @param enable	if true, snapshot painting is enabled; if false, the balloon tip is painted normally again
+	 */
+	public void enableSnapshotPainting(boolean enable) {
+		snapshotPainting = enable;
+		snapshot = null;
+		repaint();
+	}
+
+	/**
+	 * Is snapshot painting enabled?
+	 * @return		true if snapshot painting is enabled
+	 */
+	public boolean isSnapshotPainting() {
+		return snapshotPainting;
+	}
+
+	public void paint(Graphics g) {
+		if (!snapshotPainting) {
+			super.paint(g);
+			return;
+		}
+
+		int width = getWidth();
+		int height = getHeight();
+		if (width <= 0 || height <= 0 || opacity <= 0.0f) {
+			return;
+		}
+
+		// Take into account the scale of the device (HiDPI screens), such that the snapshot is not blurred
+		AffineTransform transform = ((Graphics2D) g).getTransform();
+		int imageWidth = (int) Math.ceil(width * transform.getScaleX());
+		int imageHeight = (int) Math.ceil(height * transform.getScaleY());
+		if (snapshot == null || snapshot.getWidth() != imageWidth || snapshot.getHeight() != imageHeight) {
+			snapshot = getGraphicsConfiguration() != null
+					? getGraphicsConfiguration().createCompatibleImage(imageWidth, imageHeight, Transparency.TRANSLUCENT)
+					: new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+			Graphics2D snapshotGraphics = snapshot.createGraphics();
+			snapshotGraphics.scale(transform.getScaleX(), transform.getScaleY());
+			float currentOpacity = opacity;
+			opacity = 1.0f; // The snapshot itself is opaque; the opacity is applied when drawing it
+			super.paint(snapshotGraphics);
+			opacity = currentOpacity;
+			snapshotGraphics.dispose();
+		}
+
+		Graphics2D g2d = (Graphics2D) g;
+		Composite backup = g2d.getComposite();
+		if (opacity!=1.0f) {
+			g2d.setComposite(getOpacityComposite());
+		}
+		g2d.drawImage(snapshot, 0, 0, width, height, null);
+		g2d.setComposite(backup);
+	}
+
 	public void paintComponent(Graphics g) {
 		if (opacity!=1.0f) {
-			((Graphics2D) g).setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
+			((Graphics2D) g).setComposite(getOpacityComposite());
 		}
 		super.paintComponent(g);
 	}
 
+	protected void paintBorder(Graphics g) {
+		if (style != null && getBorder() == style) {
+			boolean measure = BalloonTipMetrics.isEnabled();
+			long start = measure ? System.nanoTime() : 0;
+			style.renderBorder(this, g, 0, 0, getWidth(), getHeight());
+			if (measure) {
+				BalloonTipMetrics.record(BalloonTipMetrics.Metric.STYLE_PAINT, System.nanoTime() - start);
+			}
+		} else {
+			super.paintBorder(g);
+		}
+	}
+
+	/**
+	 * Get the balloon tip's preferred size
+	 * The size is cached until the balloon tip is invalidated, or until its contents, padding, style or close button change.
+	 * (Changing the balloon tip's own bounds does not affect its preferred size, so that does not clear the cache.)
+	 * @return		the preferred size
+	 */
+	public Dimension getPreferredSize() {
+		if (isPreferredSizeSet()) {
+			return super.getPreferredSize();
+		}
+		if (preferredSize == null || !areChildrenValid()) {
+			preferredSize = super.getPreferredSize();
+		}
+		return new Dimension(preferredSize);
+	}
+
+	public void invalidate() {
+		if (!resizing) {
+			preferredSize = null;
+		}
+		super.invalidate();
+	}
+
+	public void setBounds(int x, int y, int width, int height) {
+		resizing = true;
+		try {
+			super.setBounds(x, y, width, height);
+		} finally {
+			resizing = false;
+		}
+	}
+
 	/**
 	 * Set this balloon tip's visibility
 	 * @param visible		visible if true (and if the listeners associated with this balloon tip have no reason to hide the balloon tip!
 	 * 						For example, it makes no sense to show balloon tip if the component it's attached to is hidden...); invisible otherwise
 	 */
 	public void setVisible(boolean visible) {
-		visibilityControl.setCriterionAndUpdate("manual", visible);
-	}
-
-	protected void finalize() throws Throwable {
-		closeBalloon(); // This will remove all of the listeners a balloon tip uses...
-		super.finalize();
+		if (visible) {
+			checkNotReleased();
+		}
+		visibilityControl.setCriterionAndUpdate(CRITERION_MANUAL,  visible);
 	}
 
 	/*
 	 * Sets the balloon tip's visibility by calling super.setVisible()
 	 * (This bypasses the balloon tip's visibility control.)
+	 * If the balloon tip becomes visible while it's waiting to be repositioned, it is repositioned first,
+	 * such that it never shows up at its old location until the next pass of its LayoutCoordinator.
 	 * @param visible	true if the balloon tip should be visible
 	 */
 	protected void forceSetVisible(boolean visible) {
+		if (visible && !isVisible() && topLevelContainer != null) {
+			LayoutCoordinator.getInstance(topLevelContainer).flush(this);
+		}
+		if (BalloonTipMetrics.isEnabled() && visible != isVisible()) {
+			BalloonTipMetrics.record(visible ? BalloonTipMetrics.Metric.BALLOON_SHOWN : BalloonTipMetrics.Metric.BALLOON_HIDDEN, 0);
+		}
 		super.setVisible(visible);
 	}
 
+	/*
+	 * Are all of the balloon tip's children (contents, close button) valid?
+	 * (If a child was changed while the balloon tip itself was already invalid, the balloon tip does not get notified;
+	 * the child is invalid in that case, so the cached preferred size can't be trusted.)
+	 */
+	private boolean areChildrenValid() {
+		for (int i = 0; i < getComponentCount(); ++i) {
+			if (!getComponent(i).isValid()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Retrieve the composite that paints the balloon tip at its current opacity
+	 * (The composite is only recreated if the opacity has changed.)
+	 * @return		the composite
+	 */
+	private AlphaComposite getOpacityComposite() {
+		if (opacityComposite == null || opacityComposite.getAlpha() != opacity) {
+			opacityComposite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity);
+		}
+		return opacityComposite;
+	}
+
 	/*
 	 * Helper method that checks whether the attached component is visible or not
 	 * (i.e. its area is greater than 0 and it really is visible..)
@@ -559,13 +832,36 @@ public class BalloonTip extends JPanel {
 	
 	/*
 	 * Fire a state change event to the viewportlistener (if any)
+	 * (Call this whenever the attached rectangle has changed.)
 	 */
 	protected void notifyViewportListener() {
 		if (viewportListener!=null) {
+			invalidateViewportIndexes();
 			viewportListener.stateChanged(null);
 		}
 	}
 
+	/*
+	 * Checks whether the balloon's tip is still within the viewports it's nested in (if any)
+	 * (ViewportIndex calls this method for each balloon tip whose visibility may have changed.)
+	 */
+	void checkWithinViewports() {
+		if (viewportListener!=null) {
+			viewportListener.stateChanged(null);
+		}
+	}
+
+	/*
+	 * Indicate that the attached rectangle may have moved within the viewports this balloon tip is nested in (if any)
+	 */
+	private void invalidateViewportIndexes() {
+		if (viewportListener!=null) {
+			for (JViewport viewport : viewportListener.viewports) {
+				ViewportIndex.invalidate(viewport);
+			}
+		}
+	}
+
 	/*
 	 * Default constructor; does nothing but call the super-constructor
 	 */
@@ -648,10 +944,14 @@ public class BalloonTip extends JPanel {
 		this.style = style;
 		this.positioner = positioner;
 
+		geometry.clear(); // (A pooled balloon tip may still hold the values of its previous positioner.)
+		geometry.setFallback(style);
 		positioner.setBalloonTip(this);
 		setBorder(this.style);
 		setOpaque(false);
-		setLayout(new GridBagLayout());
+		if (!(getLayout() instanceof GridBagLayout)) {
+			setLayout(new GridBagLayout());
+		}
 		setPadding(4);
 
 		add(this.contents, new GridBagConstraints(0, 0, 1, 1, 1, 1, GridBagConstraints.WEST, GridBagConstraints.BOTH, new Insets(0, 0, 0, 0), 0, 0));
@@ -671,9 +971,14 @@ public class BalloonTip extends JPanel {
 			 * We'll just have to wait until the parent is set and try again... */
 			ancestorListener = new AncestorListener() {
 				public void ancestorAdded(AncestorEvent e) {
-					setupHelper();
-					e.getComponent().removeAncestorListener(this); // Remove yourself
-					ancestorListener = null;
+					long start = StallWatchdog.enter(BalloonTip.this, "ancestorAdded", e);
+					try {
+						setupHelper();
+						e.getComponent().removeAncestorListener(this); // Remove yourself
+						ancestorListener = null;
+					} finally {
+						StallWatchdog.exit(start);
+					}
 				}
 				public void ancestorMoved(AncestorEvent e) {}
 				public void ancestorRemoved(AncestorEvent e) {}
@@ -682,6 +987,61 @@ public class BalloonTip extends JPanel {
 		}
 	}
 
+	/*
+	 * Sets up a balloon tip again, after it was closed and returned to its BalloonTipPool
+	 */
+	void rebind(JComponent attachedComponent, JComponent contents, BalloonTipStyle style, BalloonTipPositioner positioner, JButton closeButton) {
+		// (The previous contents and positioner were already let go of when the balloon tip was closed.)
+		setOpacity(1.0f);
+		enableSnapshotPainting(false);
+		preferredSize = null;
+		released = false;
+		setup(attachedComponent, contents, style, positioner, closeButton);
+	}
+
+	/*
+	 * Set the pool this balloon tip is returned to once it's closed
+	 */
+	void setPool(BalloonTipPool pool) {
+		this.pool = pool;
+	}
+
+	/*
+	 * Get the pool this balloon tip is returned to once it's closed (null if none)
+	 */
+	BalloonTipPool getPool() {
+		return pool;
+	}
+
+	/*
+	 * Was this balloon tip returned to its pool?
+	 */
+	boolean isReleased() {
+		return released;
+	}
+
+	/*
+	 * Does anyone besides the balloon tip itself still listen to it?
+	 * (Only meaningful once the balloon tip is closed, as that removes all of its own listeners.)
+	 */
+	boolean hasForeignListeners() {
+		return getPropertyChangeListeners().length > 0 || getVetoableChangeListeners().length > 0
+				|| getAncestorListeners().length > 0 || getComponentListeners().length > 0 || getContainerListeners().length > 0
+				|| getHierarchyListeners().length > 0 || getHierarchyBoundsListeners().length > 0
+				|| getMouseListeners().length > 0 || getMouseMotionListeners().length > 0 || getMouseWheelListeners().length > 0
+				|| getKeyListeners().length > 0 || getFocusListeners().length > 0 || getInputMethodListeners().length > 0;
+	}
+
+	/*
+	 * Makes sure a balloon tip that was returned to its pool can't be used anymore
+	 * @throws IllegalStateException	if the balloon tip was returned to its pool
+	 */
+	private void checkNotReleased() {
+		if (released) {
+			throw new IllegalStateException("This balloon tip was closed and returned to its pool; it cannot be used anymore");
+		}
+	}
+
 	/*
 	 * Helper method for setup() and changeAttachedComponent()
 	 */
@@ -692,9 +1052,10 @@ public class BalloonTip extends JPanel {
 		}
 
 		// If the attached component is moved/hidden/shown, the balloon tip should act accordingly
-		attachedComponent.addComponentListener(componentListener);
+		ListenerHub.addComponentListener(attachedComponent, componentListener);
+		ListenerHub.addHierarchyListener(attachedComponent, hierarchyListener);
 		// Update balloon tip's visibility
-		visibilityControl.setCriterionAndUpdate("attachedComponentShowing",isAttachedComponentShowing());
+		visibilityControl.setCriterionAndUpdate(CRITERION_ATTACHED_COMPONENT_SHOWING, isAttachedComponentShowing());
 
 		// Follow the path of parent components to see if there are any we should listen to
 		Container current = attachedComponent.getParent();
@@ -707,17 +1068,17 @@ public class BalloonTip extends JPanel {
 				if (tabbedPaneListener == null) {
 					tabbedPaneListener = getTabbedPaneListener();
 				}
-				previous.addComponentListener(tabbedPaneListener);
+				ListenerHub.addComponentListener(previous, tabbedPaneListener);
 			} else if (current instanceof JViewport) {
 				if (viewportListener == null) {
 					viewportListener = new NestedViewportListener();
 				}
 				viewportListener.viewports.add((JViewport) current);
-				((JViewport) current).addChangeListener(viewportListener);
+				ViewportIndex.register((JViewport) current, this);
 			} else if (current instanceof BalloonTip) {
 				// In the rare case where this balloon tip is attached to a component within another balloon tip...
 				// Monitor the parent balloon tip's movements and visibility
-				current.addComponentListener(componentListener);
+				ListenerHub.addComponentListener(current, componentListener);
 				// Draw this balloon tip one layer higher; otherwise it would be overlapping the parent balloon tip
 				topLevelContainer.setLayer(this, JLayeredPane.getLayer(this) + 1);
 				// Quit the loop here; any other parent components that should be listened to are meant for the parent balloon tip
@@ -747,7 +1108,8 @@ public class BalloonTip extends JPanel {
 			ancestorListener = null;
 		}
 		
-		attachedComponent.removeComponentListener(componentListener);
+		ListenerHub.removeComponentListener(attachedComponent, componentListener);
+		ListenerHub.removeHierarchyListener(attachedComponent, hierarchyListener);
 
 		// Remove any listeners that were attached to parent components
 		if (tabbedPaneListener!=null) {
@@ -755,9 +1117,9 @@ public class BalloonTip extends JPanel {
 			Container previous = attachedComponent;
 			while (current!=null) {
 				if (current instanceof JTabbedPane || current.getLayout() instanceof CardLayout) {
-					previous.removeComponentListener(tabbedPaneListener);
+					ListenerHub.removeComponentListener(previous, tabbedPaneListener);
 				} else if (current instanceof BalloonTip) {
-					current.removeComponentListener(componentListener);
+					ListenerHub.removeComponentListener(current, componentListener);
 					break;
 				}
 				previous = current;
@@ -768,20 +1130,21 @@ public class BalloonTip extends JPanel {
 
 		if (topLevelContainer != null) {
 			topLevelContainer.remove(this);
-			topLevelContainer.removeComponentListener(topLevelContainerListener);
+			ListenerHub.removeComponentListener(topLevelContainer, topLevelContainerListener);
+			BalloonTipRegistry.unregister(this);
 			topLevelContainer = null;
 		}
 
 		if (viewportListener!=null) {
 			for (JViewport viewport : viewportListener.viewports) {
-				viewport.removeChangeListener(viewportListener);
+				ViewportIndex.unregister(viewport, this);
 			}
 			viewportListener.viewports.clear();
 			viewportListener = null;
 		}
 
 		// Clean up our criterias
-		visibilityControl.criteria.clear();
+		visibilityControl.clear();
 	}
 
 	/*
@@ -791,15 +1154,25 @@ public class BalloonTip extends JPanel {
 	private ComponentAdapter getTabbedPaneListener() {
 		return new ComponentAdapter() {
 			public void componentShown(ComponentEvent e) {
-				visibilityControl.setCriterionAndUpdate("tabShowing",true);
-				/* We must also recheck whether the attached component is visible!
-				 * While this tab *was* invisible, the component might've been resized, hidden, shown, ... ,
-				 * but no events were fired because the tab was hidden! */
-				visibilityControl.setCriterionAndUpdate("attachedComponentShowing",isAttachedComponentShowing());
-				refreshLocation();
+				long start = StallWatchdog.enter(BalloonTip.this, "tabShown", e);
+				try {
+					visibilityControl.setCriterionAndUpdate(CRITERION_TAB_SHOWING, true);
+					/* We must also recheck whether the attached component is visible!
+					 * While this tab *was* invisible, the component might've been resized, hidden, shown, ... ,
+					 * but no events were fired because the tab was hidden! */
+					visibilityControl.setCriterionAndUpdate(CRITERION_ATTACHED_COMPONENT_SHOWING, isAttachedComponentShowing());
+					refreshLocation();
+				} finally {
+					StallWatchdog.exit(start);
+				}
 			}
 			public void componentHidden(ComponentEvent e) {
-				visibilityControl.setCriterionAndUpdate("tabShowing",false);
+				long start = StallWatchdog.enter(BalloonTip.this, "tabHidden", e);
+				try {
+					visibilityControl.setCriterionAndUpdate(CRITERION_TAB_SHOWING, false);
+				} finally {
+					StallWatchdog.exit(start);
+				}
 			}
 		};
 	}
@@ -812,25 +1185,40 @@ public class BalloonTip extends JPanel {
 		private Vector<JViewport> viewports = new Vector<JViewport>();
 
 		public void stateChanged(ChangeEvent e) {
-			refreshLocation();
-			Point tipLocation = positioner.getTipLocation();
+			long start = StallWatchdog.enter(BalloonTip.this, "viewportChanged", e);
+			try {
+				refreshLocation();
+				Point tipLocation = positioner.getTipLocation();
 			
-			boolean isWithinViewport = false;
-			for (JViewport viewport:viewportListener.viewports) {
-				Rectangle view = new Rectangle(SwingUtilities.convertPoint(viewport, new Point(0,0), getTopLevelContainer()), viewport.getSize());
-				
-				if (tipLocation.y >= view.y-1 // -1 because we still want to allow balloons that are attached to the very top...
-						&& tipLocation.y <= (view.y + view.height)
-						&& (tipLocation.x) >= view.x
-						&& (tipLocation.x) <= (view.x + view.width)) {
-					isWithinViewport = true;
-				} else {
-					isWithinViewport = false;
-					break;
+				boolean isWithinViewport = true;
+				for (JViewport viewport:viewports) {
+					// Find the viewport's location in the top-level container
+					int viewX = 0;
+					int viewY = 0;
+					Component current = viewport;
+					while (current != null && current != topLevelContainer) {
+						viewX += current.getX();
+						viewY += current.getY();
+						current = current.getParent();
+					}
+					if (current == null) {
+						Point location = SwingUtilities.convertPoint(viewport, 0, 0, topLevelContainer);
+						viewX = location.x;
+						viewY = location.y;
+					}
+
+					boolean isWithin = tipLocation.y >= viewY-1 // -1 because we still want to allow balloons that are attached to the very top...
+							&& tipLocation.y <= (viewY + viewport.getHeight())
+							&& (tipLocation.x) >= viewX
+							&& (tipLocation.x) <= (viewX + viewport.getWidth());
+					ViewportIndex.setInside(viewport, BalloonTip.this, isWithin);
+					isWithinViewport &= isWithin;
 				}
-			}
-			if (!viewports.isEmpty()) {
-				visibilityControl.setCriterionAndUpdate("withinViewport", isWithinViewport);
+				if (!viewports.isEmpty()) {
+					visibilityControl.setCriterionAndUpdate(CRITERION_WITHIN_VIEWPORT,  isWithinViewport);
+				}
+			} finally {
+				StallWatchdog.exit(start);
 			}
 		}
 	}
@@ -839,32 +1227,70 @@ public class BalloonTip extends JPanel {
 	 * Controls when a balloon tip should be shown or hidden
 	 */
 	protected class VisibilityControl {
-		private HashMap<String, Boolean> criteria = new HashMap<String, Boolean>(); // A list of criteria determining a balloon tip's visibility
+		private int falseCriteria = 0;		// Bitmask of the criteria that are currently false
 
 		/**
 		 * Sets the value of a particular visibility criterion and checks whether the balloon tip should still be visible or not
-		 * @param criterion		the visibility criterion
+		 * @param criterion		the visibility criterion (as returned by registerVisibilityCriterion())
 		 * @param value			value of the criterion
 		 */
-		public void setCriterionAndUpdate(String criterion, Boolean value) {
-			criteria.put(criterion, value);
+		public void setCriterionAndUpdate(int criterion, boolean value) {
+			if (value) {
+				falseCriteria &= ~criterion;
+			} else {
+				falseCriteria |= criterion;
+			}
 			update();
 		}
 
+		/**
+		 * Sets the value of a particular visibility criterion and checks whether the balloon tip should still be visible or not
+		 * (The criterion is registered if it didn't exist yet.)
+		 * @param criterion		name of the visibility criterion
+		 * @param value			value of the criterion
+		 */
+		public void setCriterionAndUpdate(String criterion, Boolean value) {
+			setCriterionAndUpdate(registerVisibilityCriterion(criterion), value.booleanValue());
+		}
+
 		/**
 		 * Makes sure the balloon tip's visibility is updated by checking all visibility criteria
 		 * If any of the visibility criteria is false, the balloon tip should be invisible.
 		 * Only if all criteria are true, the balloon tip can be visible.
 		 */
 		public void update() {
-			Iterator<Boolean> i = criteria.values().iterator();
-			while (i.hasNext()) {
-				if (!i.next()) {
-					forceSetVisible(false);
-					return;
+			boolean visible = falseCriteria == 0;
+			if (visible != isVisible()) {
+				forceSetVisible(visible);
+			}
+		}
+
+		/*
+		 * Forgets the values of all criteria
+		 */
+		private void clear() {
+			falseCriteria = 0;
+		}
+	}
+
+	/**
+	 * Registers a visibility criterion, such that it can be used by a VisibilityControl
+	 * (Registering a criterion that already exists just returns the existing one.)
+	 * @param criterion		name of the criterion
+	 * @return				the criterion's bit, to be passed to VisibilityControl.setCriterionAndUpdate()
+	 * @throws IllegalStateException	if there are no more bits available for new criteria
+	 */
+	protected static int registerVisibilityCriterion(String criterion) {
+		synchronized (visibilityCriteria) {
+			Integer bit = visibilityCriteria.get(criterion);
+			if (bit == null) {
+				if (visibilityCriteria.size() >= Integer.SIZE) {
+					throw new IllegalStateException("Too many visibility criteria; cannot register \"" + criterion + "\"");
 				}
+				bit = 1 << visibilityCriteria.size();
+				visibilityCriteria.put(criterion, bit);
 			}
-			forceSetVisible(true);
+			return bit;
 		}
 	}
 	
@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.util.ArrayList;
+import java.util.EventListener;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.JLayeredPane;
+
+/**
+ * Measures how much time balloon tips cost on the event dispatch thread
+ * Metrics are disabled by default; while disabled, balloon tips only check a single flag and nothing is recorded.
+ * Once enabled, each metric keeps a count, a total time and a maximum time, and each measurement is passed to the
+ * registered metrics listeners, which can forward it to e.g. a logging or monitoring system.
+ * The number of live (i.e. open) balloon tips per top-level container is always available (see BalloonTipRegistry).
+ * (Like Swing components, this class should only be used on the event dispatch thread.)
+ * @author Tim Molderez
+ */
+public final class BalloonTipMetrics {
+
+	/**
+	 * The operations that are measured
+	 */
+	public enum Metric {
+		/** Positioning a balloon tip (BalloonTip.refreshLocation()) */
+		REFRESH_LOCATION,
+		/** A deferred positioning pass of a LayoutCoordinator (includes the REFRESH_LOCATION measurements of its balloon tips) */
+		LAYOUT_PASS,
+		/** Painting a balloon tip's style */
+		STYLE_PAINT,
+		/** A balloon tip became visible (only counted, not timed) */
+		BALLOON_SHOWN,
+		/** A balloon tip became invisible (only counted, not timed) */
+		BALLOON_HIDDEN,
+		/** A fade effect was started (only counted, not timed) */
+		FADE_STARTED,
+		/** A single frame of a fade effect */
+		FADE_FRAME
+	}
+
+	/**
+	 * Is notified of each measurement, while metrics are enabled
+	 */
+	public interface MetricsListener extends EventListener {
+		/**
+		 * An operation was measured
+		 * @param metric		the operation
+		 * @param duration		the time the operation took (in ns); 0 for operations that are only counted
+		 */
+		void metricRecorded(Metric metric, long duration);
+
+		/**
+		 * The number of live balloon tips on a top-level container has changed
+		 * @param topLevelContainer		the container
+		 * @param count					its number of live balloon tips
+		 */
+		void liveCountChanged(JLayeredPane topLevelContainer, int count);
+	}
+
+	private static final Metric[] METRICS = Metric.values();
+
+	private static final ArrayList<MetricsListener> listeners = new ArrayList<MetricsListener>();
+	private static MetricsListener[] listenerArray = new MetricsListener[0];	// Copy of the listeners, such that they can be notified without allocating
+	private static boolean enabled = false;
+
+	// Per metric (by ordinal)
+	private static final long[] counts = new long[METRICS.length];
+	private static final long[] totalTimes = new long[METRICS.length];
+	private static final long[] maxTimes = new long[METRICS.length];
+
+	/*
+	 * Disallow instantiating this class
+	 */
+	private BalloonTipMetrics() {}
+
+	/**
+	 * Enable/disable recording metrics
+	 * @param enable	if true, operations are measured and passed to the metrics listeners
+	 */
+	public static void setEnabled(boolean enable) {
+		enabled = enable;
+	}
+
+	/**
+	 * Are metrics being recorded?
+	 * @return			true if metrics are enabled
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Register a metrics listener
+	 * @param listener		the listener
+	 */
+	public static void addMetricsListener(MetricsListener listener) {
+		listeners.add(listener);
+		listenerArray = listeners.toArray(new MetricsListener[listeners.size()]);
+	}
+
+	/**
+	 * Unregister a metrics listener
+	 * @param listener		the listener
+	 */
+	public static void removeMetricsListener(MetricsListener listener) {
+		listeners.remove(listener);
+		listenerArray = listeners.toArray(new MetricsListener[listeners.size()]);
+	}
+
+	/**
+	 * Records a measurement (if metrics are enabled)
+	 * The library records its own operations; this method can also be used by e.g. custom positioners or styles.
+	 * @param metric		the operation
+	 * @param duration		the time the operation took (in ns); 0 for operations that are only counted
+	 */
+	public static void record(Metric metric, long duration) {
+		if (!enabled) {
+			return;
+		}
+		int i = metric.ordinal();
+		++counts[i];
+		totalTimes[i] += duration;
+		if (duration > maxTimes[i]) {
+			maxTimes[i] = duration;
+		}
+		for (MetricsListener listener : listenerArray) {
+			listener.metricRecorded(metric, duration);
+		}
+	}
+
+	/**
+	 * Get the number of times an operation was recorded
+	 * @param metric		the operation
+	 * @return				its count
+	 */
+	public static long getCount(Metric metric) {
+		return counts[metric.ordinal()];
+	}
+
+	/**
+	 * Get the total time an operation has taken
+	 * @param metric		the operation
+	 * @return				the total time (in ns)
+	 */
+	public static long getTotalTime(Metric metric) {
+		return totalTimes[metric.ordinal()];
+	}
+
+	/**
+	 * Get the longest time an operation has taken
+	 * @param metric		the operation
+	 * @return				the maximum time (in ns)
+	 */
+	public static long getMaxTime(Metric metric) {
+		return maxTimes[metric.ordinal()];
+	}
+
+	/**
+	 * Resets the counts and times of all metrics
+	 * (The live balloon tip counts are not affected.)
+	 */
+	public static void reset() {
+		for (int i = 0; i < METRICS.length; ++i) {
+			counts[i] = 0;
+			totalTimes[i] = 0;
+			maxTimes[i] = 0;
+		}
+	}
+
+	/**
+	 * Get the number of live balloon tips on a top-level container
+	 * @param topLevelContainer		the container
+	 * @return						its number of live balloon tips
+	 */
+	public static int getLiveCount(JLayeredPane topLevelContainer) {
+		return BalloonTipRegistry.getCount(topLevelContainer);
+	}
+
+	/**
+	 * Get the number of live balloon tips of each top-level container that has any
+	 * @return			a new map, from top-level container to its number of live balloon tips
+	 */
+	public static Map<JLayeredPane, Integer> getLiveCounts() {
+		HashMap<JLayeredPane, Integer> result = new HashMap<JLayeredPane, Integer>();
+		for (JLayeredPane topLevelContainer : BalloonTipRegistry.getTopLevelContainers()) {
+			result.put(topLevelContainer, BalloonTipRegistry.getCount(topLevelContainer));
+		}
+		return result;
+	}
+
+	/*
+	 * Called by the BalloonTipRegistry when a balloon tip was added to or removed from a top-level container
+	 * Notifies the metrics listeners of the new live balloon tip count (if metrics are enabled).
+	 */
+	static void fireLiveCountChanged(JLayeredPane topLevelContainer, int count) {
+		if (enabled) {
+			for (MetricsListener listener : listenerArray) {
+				listener.liveCountChanged(topLevelContainer, count);
+			}
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.util.ArrayList;
+
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+
+import net.java.balloontip.BalloonTip.AttachLocation;
+import net.java.balloontip.BalloonTip.Orientation;
+import net.java.balloontip.positioners.BalloonTipPositioner;
+import net.java.balloontip.styles.BalloonTipStyle;
+import net.java.balloontip.utils.FadingUtils;
+import net.java.balloontip.utils.TimingUtils;
+
+/**
+ * A pool of balloon tips, meant for applications that frequently show short-lived balloon tips (e.g. notifications)
+ * Balloon tips obtained from a pool are returned to it once they're closed (by closeBalloon() or their close button),
+ * such that the next balloon tip that's obtained can reuse them instead of creating a new BalloonTip.
+ * A balloon tip that was returned to its pool may not be used anymore; most of its methods will throw an IllegalStateException.
+ * Its fade effect (see FadingUtils) and timeouts (see TimingUtils) are cancelled, such that they can't affect its next use.
+ * A closed balloon tip that still has listeners you added yourself is not returned to the pool,
+ * as those listeners would otherwise be notified of everything that happens to it during its next use.
+ * @author Tim Molderez
+ */
+public final class BalloonTipPool {
+	private final ArrayList<BalloonTip> idle = new ArrayList<BalloonTip>();	// Balloon tips that are ready to be reused
+	private int maximumSize;
+
+	private long created = 0;
+	private long reused = 0;
+	private long recycled = 0;
+	private long discarded = 0;
+
+	/**
+	 * Constructor
+	 * @param maximumSize		maximum number of closed balloon tips the pool holds on to
+	 */
+	public BalloonTipPool(int maximumSize) {
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * Obtain a balloon tip containing some text, with a default orientation
+	 * @param attachedComponent		attach the balloon tip to this component (may not be null)
+	 * @param text					the contents of the balloon tip (may contain HTML)
+	 * @param style					the balloon tip's looks (may not be null)
+	 * @param useCloseButton		if true, the balloon tip gets a close button
+	 * @return						the balloon tip
+	 */
+	public BalloonTip obtain(JComponent attachedComponent, String text, BalloonTipStyle style, boolean useCloseButton) {
+		return obtain(attachedComponent, new JLabel(text), style, Orientation.LEFT_ABOVE, AttachLocation.ALIGNED, 15, 15, useCloseButton);
+	}
+
+	/**
+	 * Obtain a balloon tip
+	 * @param attachedComponent		attach the balloon tip to this component (may not be null)
+	 * @param contents				the balloon tip's contents (may not be null)
+	 * @param style					the balloon tip's looks (may not be null)
+	 * @param orientation			orientation of the balloon tip
+	 * @param attachLocation		location of the balloon's tip  within the attached component
+	 * @param horizontalOffset		horizontal offset for the balloon's tip
+	 * @param verticalOffset		vertical offset for the balloon's tip
+	 * @param useCloseButton		if true, the balloon tip gets a close button
+	 * @return						the balloon tip
+	 */
+	public synchronized BalloonTip obtain(JComponent attachedComponent, JComponent contents, BalloonTipStyle style, Orientation orientation, AttachLocation attachLocation,
+			int horizontalOffset, int verticalOffset, boolean useCloseButton) {
+		if (idle.isEmpty()) {
+			BalloonTip balloon = new BalloonTip(attachedComponent, contents, style, orientation, attachLocation, horizontalOffset, verticalOffset, useCloseButton);
+			balloon.setPool(this);
+			++created;
+			return balloon;
+		}
+
+		BalloonTip balloon = idle.remove(idle.size() - 1);
+		balloon.rebind(attachedComponent, contents, style, balloon.setupPositioner(orientation, attachLocation, horizontalOffset, verticalOffset),
+				useCloseButton?BalloonTip.getDefaultCloseButton():null);
+		++reused;
+		return balloon;
+	}
+
+	/**
+	 * Obtain a balloon tip
+	 * @param attachedComponent		attach the balloon tip to this component (may not be null)
+	 * @param contents				the balloon tip's contents (may not be null)
+	 * @param style					the balloon tip's looks (may not be null)
+	 * @param positioner			determines the way the balloon tip is positioned (may not be null)
+	 * @param closeButton			the close button to be used for the balloon tip (may be null)
+	 * @return						the balloon tip
+	 */
+	public synchronized BalloonTip obtain(JComponent attachedComponent, JComponent contents, BalloonTipStyle style, BalloonTipPositioner positioner, JButton closeButton) {
+		if (idle.isEmpty()) {
+			BalloonTip balloon = new BalloonTip(attachedComponent, contents, style, positioner, closeButton);
+			balloon.setPool(this);
+			++created;
+			return balloon;
+		}
+
+		BalloonTip balloon = idle.remove(idle.size() - 1);
+		balloon.rebind(attachedComponent, contents, style, positioner, closeButton);
+		++reused;
+		return balloon;
+	}
+
+	/**
+	 * Closes a balloon tip that was obtained from this pool, and returns it to the pool
+	 * (This is the same as calling the balloon tip's closeBalloon() method.)
+	 * @param balloon		the balloon tip
+	 * @throws IllegalArgumentException		if the balloon tip was not obtained from this pool
+	 * @throws IllegalStateException		if the balloon tip already was returned to the pool
+	 */
+	public void release(BalloonTip balloon) {
+		if (balloon.getPool() != this) {
+			throw new IllegalArgumentException("This balloon tip was not obtained from this pool");
+		}
+		if (balloon.isReleased()) {
+			throw new IllegalStateException("This balloon tip already was returned to its pool");
+		}
+		balloon.closeBalloon();
+	}
+
+	/**
+	 * Set the maximum number of closed balloon tips the pool holds on to
+	 * (If the pool currently holds more, the surplus is discarded right away.)
+	 * @param maximumSize		maximum number of balloon tips
+	 */
+	public synchronized void setMaximumSize(int maximumSize) {
+		this.maximumSize = maximumSize;
+		trim();
+	}
+
+	/**
+	 * Get the maximum number of closed balloon tips the pool holds on to
+	 * @return		maximum number of balloon tips
+	 */
+	public synchronized int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * Get the number of closed balloon tips that are currently in the pool
+	 * @return		number of balloon tips that are ready to be reused
+	 */
+	public synchronized int getSize() {
+		return idle.size();
+	}
+
+	/**
+	 * Get the number of balloon tips the pool had to create, because it was empty
+	 * @return		number of balloon tips created
+	 */
+	public synchronized long getCreatedCount() {
+		return created;
+	}
+
+	/**
+	 * Get the number of times a balloon tip was reused
+	 * @return		number of balloon tips reused
+	 */
+	public synchronized long getReusedCount() {
+		return reused;
+	}
+
+	/**
+	 * Get the number of closed balloon tips that were returned to the pool
+	 * @return		number of balloon tips recycled
+	 */
+	public synchronized long getRecycledCount() {
+		return recycled;
+	}
+
+	/**
+	 * Get the number of closed balloon tips that were discarded, because the pool was full or because they still had listeners
+	 * @return		number of balloon tips discarded
+	 */
+	public synchronized long getDiscardedCount() {
+		return discarded;
+	}
+
+	/**
+	 * Resets the created, reused, recycled and discarded counters
+	 */
+	public synchronized void resetStatistics() {
+		created = 0;
+		reused = 0;
+		recycled = 0;
+		discarded = 0;
+	}
+
+	/**
+	 * Discards all closed balloon tips in the pool
+	 */
+	public synchronized void clear() {
+		discarded += idle.size();
+		idle.clear();
+	}
+
+	/*
+	 * Returns a balloon tip that was just closed to the pool
+	 * @param balloon		the balloon tip
+	 */
+	synchronized void recycle(BalloonTip balloon) {
+		// Make sure no running fade or pending timeout affects the balloon tip once it's reused
+		FadingUtils.cancelFade(balloon);
+		TimingUtils.cancelTimeouts(balloon);
+
+		if (idle.size() < maximumSize && !balloon.hasForeignListeners()) {
+			idle.add(balloon);
+			++recycled;
+		} else {
+			++discarded;
+		}
+	}
+
+	/*
+	 * Discards balloon tips until the pool fits within its maximum size
+	 */
+	private void trim() {
+		while (idle.size() > maximumSize) {
+			idle.remove(idle.size() - 1);
+			++discarded;
+		}
+	}
+}
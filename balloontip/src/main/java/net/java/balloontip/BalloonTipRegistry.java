@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.WeakHashMap;
+
+import javax.swing.JComponent;
+import javax.swing.JLayeredPane;
+import javax.swing.RootPaneContainer;
+
+/**
+ * Keeps track of all open balloon tips, per top-level container and per attached component
+ * A balloon tip is registered as soon as it is drawn on a top-level container, and unregistered once it's closed.
+ * (A balloon tip whose attached component isn't displayable yet is registered once it gets its top-level container.)
+ * The registry only holds weak references, so it never keeps balloon tips, their windows or their attached components in memory.
+ * Looking up the balloon tips of a window or a component doesn't depend on how many balloon tips there are elsewhere.
+ * (Like Swing components, this class should only be used on the event dispatch thread.)
+ * @author Tim Molderez
+ */
+public final class BalloonTipRegistry {
+	// The balloon tips (as the keys of a weak map, used as a set) per top-level container and per attached component
+	private static final WeakHashMap<JLayeredPane, WeakHashMap<BalloonTip, Boolean>> byContainer = new WeakHashMap<JLayeredPane, WeakHashMap<BalloonTip, Boolean>>();
+	private static final WeakHashMap<JComponent, WeakHashMap<BalloonTip, Boolean>> byAttachedComponent = new WeakHashMap<JComponent, WeakHashMap<BalloonTip, Boolean>>();
+
+	/*
+	 * Disallow instantiating this class
+	 */
+	private BalloonTipRegistry() {}
+
+	/**
+	 * Get the open balloon tips on a top-level container
+	 * @param topLevelContainer		the container (see BalloonTip.getTopLevelContainer())
+	 * @return						a new list of its balloon tips
+	 */
+	public static List<BalloonTip> getBalloonTips(JLayeredPane topLevelContainer) {
+		return toList(byContainer.get(topLevelContainer));
+	}
+
+	/**
+	 * Get the open balloon tips in a window
+	 * @param window		the window (e.g. a JFrame, JDialog or JInternalFrame)
+	 * @return				a new list of its balloon tips
+	 */
+	public static List<BalloonTip> getBalloonTips(RootPaneContainer window) {
+		return getBalloonTips(window.getLayeredPane());
+	}
+
+	/**
+	 * Get the open balloon tips that are attached to a component
+	 * @param attachedComponent		the component
+	 * @return						a new list of its balloon tips
+	 */
+	public static List<BalloonTip> getAttachedBalloonTips(JComponent attachedComponent) {
+		return toList(byAttachedComponent.get(attachedComponent));
+	}
+
+	/**
+	 * Get all open balloon tips
+	 * @return			a new list of all balloon tips, grouped by top-level container
+	 */
+	public static List<BalloonTip> getBalloonTips() {
+		ArrayList<BalloonTip> result = new ArrayList<BalloonTip>();
+		for (WeakHashMap<BalloonTip, Boolean> balloons : byContainer.values()) {
+			result.addAll(balloons.keySet());
+		}
+		return result;
+	}
+
+	/**
+	 * Get the top-level containers that have open balloon tips
+	 * @return			a new list of the containers
+	 */
+	public static List<JLayeredPane> getTopLevelContainers() {
+		return new ArrayList<JLayeredPane>(byContainer.keySet());
+	}
+
+	/**
+	 * Get the number of open balloon tips on a top-level container
+	 * @param topLevelContainer		the container
+	 * @return						its number of balloon tips
+	 */
+	public static int getCount(JLayeredPane topLevelContainer) {
+		WeakHashMap<BalloonTip, Boolean> balloons = byContainer.get(topLevelContainer);
+		return balloons == null ? 0 : balloons.size();
+	}
+
+	/**
+	 * Get the number of open balloon tips that are attached to a component
+	 * @param attachedComponent		the component
+	 * @return						its number of balloon tips
+	 */
+	public static int getAttachedCount(JComponent attachedComponent) {
+		WeakHashMap<BalloonTip, Boolean> balloons = byAttachedComponent.get(attachedComponent);
+		return balloons == null ? 0 : balloons.size();
+	}
+
+	/**
+	 * Get the number of open balloon tips
+	 * @return			the total number of balloon tips
+	 */
+	public static int getCount() {
+		int count = 0;
+		for (WeakHashMap<BalloonTip, Boolean> balloons : byContainer.values()) {
+			count += balloons.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Closes all balloon tips on a top-level container (see BalloonTip.closeBalloon())
+	 * @param topLevelContainer		the container
+	 */
+	public static void closeAll(JLayeredPane topLevelContainer) {
+		for (BalloonTip balloon : getBalloonTips(topLevelContainer)) {
+			balloon.closeBalloon();
+		}
+	}
+
+	/**
+	 * Closes all balloon tips in a window (see BalloonTip.closeBalloon())
+	 * @param window		the window (e.g. a JFrame, JDialog or JInternalFrame)
+	 */
+	public static void closeAll(RootPaneContainer window) {
+		closeAll(window.getLayeredPane());
+	}
+
+	/**
+	 * Hides all balloon tips on a top-level container (see BalloonTip.setVisible())
+	 * @param topLevelContainer		the container
+	 */
+	public static void hideAll(JLayeredPane topLevelContainer) {
+		for (BalloonTip balloon : getBalloonTips(topLevelContainer)) {
+			balloon.setVisible(false);
+		}
+	}
+
+	/**
+	 * Hides all balloon tips in a window (see BalloonTip.setVisible())
+	 * @param window		the window (e.g. a JFrame, JDialog or JInternalFrame)
+	 */
+	public static void hideAll(RootPaneContainer window) {
+		hideAll(window.getLayeredPane());
+	}
+
+	/*
+	 * Called by a balloon tip once it's drawn on its top-level container
+	 */
+	static void register(BalloonTip balloon) {
+		JLayeredPane topLevelContainer = balloon.getTopLevelContainer();
+		add(byContainer, topLevelContainer, balloon);
+		add(byAttachedComponent, balloon.getAttachedComponent(), balloon);
+		BalloonTipMetrics.fireLiveCountChanged(topLevelContainer, getCount(topLevelContainer));
+	}
+
+	/*
+	 * Called by a balloon tip when it's removed from its top-level container
+	 */
+	static void unregister(BalloonTip balloon) {
+		JLayeredPane topLevelContainer = balloon.getTopLevelContainer();
+		if (remove(byContainer, topLevelContainer, balloon)) {
+			BalloonTipMetrics.fireLiveCountChanged(topLevelContainer, getCount(topLevelContainer));
+		}
+		remove(byAttachedComponent, balloon.getAttachedComponent(), balloon);
+	}
+
+	/*
+	 * Adds a balloon tip to the set of a key
+	 */
+	private static <K> void add(WeakHashMap<K, WeakHashMap<BalloonTip, Boolean>> index, K key, BalloonTip balloon) {
+		WeakHashMap<BalloonTip, Boolean> balloons = index.get(key);
+		if (balloons == null) {
+			balloons = new WeakHashMap<BalloonTip, Boolean>(4);
+			index.put(key, balloons);
+		}
+		balloons.put(balloon, Boolean.TRUE);
+	}
+
+	/*
+	 * Removes a balloon tip from the set of a key (the set itself is removed once it's empty)
+	 * @return		true if the balloon tip was in the set
+	 */
+	private static <K> boolean remove(WeakHashMap<K, WeakHashMap<BalloonTip, Boolean>> index, K key, BalloonTip balloon) {
+		WeakHashMap<BalloonTip, Boolean> balloons = index.get(key);
+		if (balloons == null || balloons.remove(balloon) == null) {
+			return false;
+		}
+		if (balloons.isEmpty()) {
+			index.remove(key);
+		}
+		return true;
+	}
+
+	/*
+	 * Copies a set of balloon tips into a list
+	 */
+	private static List<BalloonTip> toList(WeakHashMap<BalloonTip, Boolean> balloons) {
+		return balloons == null ? new ArrayList<BalloonTip>() : new ArrayList<BalloonTip>(balloons.keySet());
+	}
+}
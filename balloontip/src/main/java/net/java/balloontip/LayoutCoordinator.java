@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.util.LinkedHashSet;
+
+import javax.swing.JLayeredPane;
+import javax.swing.SwingUtilities;
+
+/**
+ * Coordinates the positioning of all balloon tips on the same JLayeredPane
+ * Instead of repositioning itself right away, a balloon tip can be marked as dirty. All dirty balloon tips are then repositioned
+ * in a single deferred pass on the event dispatch thread. Marking a balloon tip that is already dirty has no effect, so if a
+ * window is resized, each of its balloon tips is only repositioned once, no matter how many events arrive before the next pass.
+ * (Like Swing components, this class should only be used on the event dispatch thread.)
+ * @author Tim Molderez
+ */
+public final class LayoutCoordinator {
+	private static final String CLIENT_PROPERTY = LayoutCoordinator.class.getName();
+
+	private final JLayeredPane pane;
+	private LinkedHashSet<BalloonTip> dirty = new LinkedHashSet<BalloonTip>();	// Balloon tips that are waiting to be repositioned
+	private LinkedHashSet<BalloonTip> flushing = new LinkedHashSet<BalloonTip>();	// Balloon tips that are being repositioned in the current pass
+	private boolean scheduled = false;			// Is there a pass waiting on the event queue?
+
+	private long requests = 0;					// Number of times a balloon tip was marked dirty
+	private long coalesced = 0;					// Number of requests that were merged with an earlier, pending request
+	private long passes = 0;					// Number of passes that have been executed
+
+	private final Runnable flushTask = new Runnable() {
+		public void run() {
+			flush();
+		}
+	};
+
+	/*
+	 * Constructor
+	 * @param pane		the layered pane that is coordinated
+	 */
+	private LayoutCoordinator(JLayeredPane pane) {
+		this.pane = pane;
+	}
+
+	/**
+	 * Get the layout coordinator of a layered pane (it is created if needed)
+	 * @param pane		the layered pane
+	 * @return			its layout coordinator
+	 */
+	public static LayoutCoordinator getInstance(JLayeredPane pane) {
+		LayoutCoordinator coordinator = (LayoutCoordinator) pane.getClientProperty(CLIENT_PROPERTY);
+		if (coordinator == null) {
+			coordinator = new LayoutCoordinator(pane);
+			pane.putClientProperty(CLIENT_PROPERTY, coordinator);
+		}
+		return coordinator;
+	}
+
+	/**
+	 * Marks a balloon tip such that it is repositioned in the next pass
+	 * @param balloon	the balloon tip (it should be drawn on this coordinator's layered pane)
+	 */
+	public void markDirty(BalloonTip balloon) {
+		++requests;
+		if (!dirty.add(balloon)) {
+			++coalesced;
+		}
+		if (!scheduled) {
+			scheduled = true;
+			SwingUtilities.invokeLater(flushTask);
+		}
+	}
+
+	/**
+	 * Repositions all dirty balloon tips right away
+	 * (This normally happens automatically; there's only need to call this if the new positions are needed immediately.)
+	 */
+	public void flush() {
+		scheduled = false;
+		if (dirty.isEmpty()) {
+			return;
+		}
+		++passes;
+		boolean measure = BalloonTipMetrics.isEnabled();
+		long start = measure ? System.nanoTime() : 0;
+
+		// Swap the sets, such that balloon tips that are marked dirty during this pass end up in the next one
+		LinkedHashSet<BalloonTip> current = dirty;
+		dirty = flushing;
+		flushing = current;
+		for (BalloonTip balloon : current) {
+			// The balloon tip may have been closed, or moved to another pane, in the mean time
+			if (balloon.getTopLevelContainer() == pane) {
+				balloon.refreshLocation();
+			}
+		}
+		current.clear();
+		if (measure) {
+			BalloonTipMetrics.record(BalloonTipMetrics.Metric.LAYOUT_PASS, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Repositions a single balloon tip right away, if it's waiting to be repositioned
+	 * (A balloon tip does this when it becomes visible, such that it isn't shown at a stale location.)
+	 * @param balloon	the balloon tip
+	 */
+	public void flush(BalloonTip balloon) {
+		if (dirty.remove(balloon) && balloon.getTopLevelContainer() == pane) {
+			balloon.refreshLocation();
+		}
+	}
+
+	/**
+	 * Get the number of balloon tips that are waiting to be repositioned
+	 * @return		number of dirty balloon tips
+	 */
+	public int getDirtyCount() {
+		return dirty.size();
+	}
+
+	/**
+	 * Get the number of times a balloon tip was marked dirty
+	 * @return		number of requests
+	 */
+	public long getRequestCount() {
+		return requests;
+	}
+
+	/**
+	 * Get the number of requests that were merged with an earlier request for the same balloon tip
+	 * (i.e. the number of positioning passes that were saved)
+	 * @return		number of coalesced requests
+	 */
+	public long getCoalescedCount() {
+		return coalesced;
+	}
+
+	/**
+	 * Get the number of deferred passes that have been executed
+	 * @return		number of passes
+	 */
+	public long getPassCount() {
+		return passes;
+	}
+
+	/**
+	 * Resets the request, coalesced and pass counters
+	 */
+	public void resetStatistics() {
+		requests = 0;
+		coalesced = 0;
+		passes = 0;
+	}
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.awt.Color;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+
+import net.java.balloontip.BalloonTip.AttachLocation;
+import net.java.balloontip.BalloonTip.Orientation;
+import net.java.balloontip.positioners.BalloonTipPositioner;
+import net.java.balloontip.styles.BalloonTipStyle;
+import net.java.balloontip.styles.RoundedBalloonStyle;
+import net.java.balloontip.utils.AnimationScheduler;
+
+/**
+ * A lightweight handle to a text balloon tip, which only creates the actual BalloonTip once it's shown
+ * Once the balloon tip has been hidden for a while, it is closed again to free its resources.
+ * This is useful if you need lots of balloon tips of which only a few are shown at the same time.
+ * (Like Swing components, this class should only be used on the event dispatch thread.)
+ * @author Tim Molderez
+ */
+public class LazyBalloonTip {
+	/** Default time a hidden balloon tip is kept around before it is released (in ms) */
+	public static final int DEFAULT_IDLE_TIMEOUT = 10000;
+
+	private final JComponent attachedComponent;
+	private String text;
+	private final BalloonTipStyle style;
+	private final boolean useCloseButton;
+
+	// Either the positioner is given, or it is created from the orientation, attach location and offsets
+	private final BalloonTipPositioner positioner;
+	private final Orientation orientation;
+	private final AttachLocation attachLocation;
+	private final int horizontalOffset;
+	private final int verticalOffset;
+
+	private BalloonTip balloon = null;						// The actual balloon tip (null if it doesn't exist at the moment)
+	private boolean visible = false;
+	private int idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	private AnimationScheduler.Handle releaseTask = null;	// Releases the balloon tip once it has been hidden long enough
+
+	/**
+	 * Constructor
+	 * The simplest constructor, a balloon tip with some text and a default look
+	 * @param attachedComponent		attach the balloon tip to this component (may not be null)
+	 * @param text					the contents of the balloon tip (may contain HTML)
+	 */
+	public LazyBalloonTip(JComponent attachedComponent, String text) {
+		this(attachedComponent, text, new RoundedBalloonStyle(5,5,Color.WHITE, Color.BLACK), true);
+	}
+
+	/**
+	 * Constructor
+	 * @param attachedComponent		attach the balloon tip to this component (may not be null)
+	 * @param text					the contents of the balloon tip (may contain HTML)
+	 * @param style					the balloon tip's looks (may not be null)
+	 * @param useCloseButton		if true, the balloon tip gets a close button, which hides the balloon tip
+	 */
+	public LazyBalloonTip(JComponent attachedComponent, String text, BalloonTipStyle style, boolean useCloseButton) {
+		this(attachedComponent, text, style, Orientation.LEFT_ABOVE, AttachLocation.ALIGNED, 15, 15, useCloseButton);
+	}
+
+	/**
+	 * Constructor
+	 * @param attachedComponent		attach the balloon tip to this component (may not be null)
+	 * @param text					the contents of the balloon tip (may contain HTML)
+	 * @param style					the balloon tip's looks (may not be null)
+	 * @param orientation			orientation of the balloon tip
+	 * @param attachLocation		location of the balloon's tip  within the attached component
+	 * @param horizontalOffset		horizontal offset for the balloon's tip
+	 * @param verticalOffset		vertical offset for the balloon's tip
+	 * @param useCloseButton		if true, the balloon tip gets a close button, which hides the balloon tip
+	 */
+	public LazyBalloonTip(JComponent attachedComponent, String text, BalloonTipStyle style, Orientation orientation, AttachLocation attachLocation,
+			int horizontalOffset, int verticalOffset, boolean useCloseButton) {
+		this.attachedComponent = attachedComponent;
+		this.text = text;
+		this.style = style;
+		this.useCloseButton = useCloseButton;
+		this.positioner = null;
+		this.orientation = orientation;
+		this.attachLocation = attachLocation;
+		this.horizontalOffset = horizontalOffset;
+		this.verticalOffset = verticalOffset;
+	}
+
+	/**
+	 * Constructor
+	 * @param attachedComponent		attach the balloon tip to this component (may not be null)
+	 * @param text					the contents of the balloon tip (may contain HTML)
+	 * @param style					the balloon tip's looks (may not be null)
+	 * @param positioner			determines the way the balloon tip is positioned (may not be null)
+	 * 								(The positioner is reused each time the balloon tip is created.)
+	 * @param useCloseButton		if true, the balloon tip gets a close button, which hides the balloon tip
+	 */
+	public LazyBalloonTip(JComponent attachedComponent, String text, BalloonTipStyle style, BalloonTipPositioner positioner, boolean useCloseButton) {
+		this.attachedComponent = attachedComponent;
+		this.text = text;
+		this.style = style;
+		this.useCloseButton = useCloseButton;
+		this.positioner = positioner;
+		this.orientation = null;
+		this.attachLocation = null;
+		this.horizontalOffset = 0;
+		this.verticalOffset = 0;
+	}
+
+	/**
+	 * Shows or hides the balloon tip
+	 * Showing the balloon tip creates it, if necessary.
+	 * Hiding it starts the idle timeout, after which the balloon tip is released.
+	 * @param visible		true if the balloon tip should be visible
+	 */
+	public void setVisible(boolean visible) {
+		this.visible = visible;
+		cancelRelease();
+		if (visible) {
+			if (balloon == null) {
+				balloon = createBalloonTip();
+			}
+			balloon.setVisible(true);
+		} else if (balloon != null) {
+			balloon.setVisible(false);
+			if (idleTimeout == 0) {
+				release();
+			} else if (idleTimeout > 0) {
+				releaseTask = AnimationScheduler.schedule(new AnimationScheduler.Task() {
+					public long pulse(long now) {
+						releaseTask = null;
+						release();
+						return -1;
+					}
+				}, idleTimeout);
+			}
+		}
+	}
+
+	/**
+	 * Is the balloon tip set to be visible?
+	 * (The balloon tip may still be invisible if, for example, its attached component isn't showing.)
+	 * @return		true if setVisible(true) was called most recently
+	 */
+	public boolean isVisible() {
+		return visible;
+	}
+
+	/**
+	 * Set the text shown in the balloon tip
+	 * @param text		the contents of the balloon tip (may contain HTML)
+	 */
+	public void setText(String text) {
+		this.text = text;
+		if (balloon != null) {
+			balloon.setTextContents(text);
+		}
+	}
+
+	/**
+	 * Get the text shown in the balloon tip
+	 * @return		the contents of the balloon tip
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * Set the time a hidden balloon tip is kept around before it is released
+	 * @param timeout		idle timeout (in ms); if 0, the balloon tip is released as soon as it's hidden;
+	 * 						if negative, it's never released automatically
+	 */
+	public void setIdleTimeout(int timeout) {
+		idleTimeout = timeout;
+	}
+
+	/**
+	 * Get the time a hidden balloon tip is kept around before it is released
+	 * @return		idle timeout (in ms)
+	 */
+	public int getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * Retrieve the actual balloon tip
+	 * Don't hold on to it; it is closed once it's released.
+	 * @return		the balloon tip, or null if it currently doesn't exist
+	 */
+	public BalloonTip getBalloonTip() {
+		return balloon;
+	}
+
+	/**
+	 * Hides the balloon tip and releases it right away
+	 * (The handle itself can still be used; showing it again creates a new balloon tip.)
+	 */
+	public void release() {
+		visible = false;
+		cancelRelease();
+		if (balloon != null) {
+			balloon.closeBalloon();
+			balloon = null;
+		}
+	}
+
+	/*
+	 * Creates the actual balloon tip
+	 * @return		the balloon tip
+	 */
+	private BalloonTip createBalloonTip() {
+		BalloonTip result;
+		if (positioner != null) {
+			result = new BalloonTip(attachedComponent, new JLabel(text), style, positioner, null);
+		} else {
+			result = new BalloonTip(attachedComponent, new JLabel(text), style, orientation, attachLocation, horizontalOffset, verticalOffset, false);
+		}
+
+		// The close button only hides the balloon tip, such that it's released after the idle timeout
+		if (useCloseButton) {
+			JButton button = BalloonTip.getDefaultCloseButton();
+			button.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					setVisible(false);
+				}
+			});
+			result.setCloseButton(button);
+		}
+		return result;
+	}
+
+	/*
+	 * Cancels the pending release of the balloon tip, if any
+	 */
+	private void cancelRelease() {
+		if (releaseTask != null) {
+			releaseTask.cancel();
+			releaseTask = null;
+		}
+	}
+}
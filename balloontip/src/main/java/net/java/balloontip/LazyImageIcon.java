@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.net.URL;
+
+import javax.swing.ImageIcon;
+
+/**
+ * An image icon that only loads and decodes its image the first time it's needed
+ * (It's still an ImageIcon, so look-and-feels can derive a disabled icon from it as usual.)
+ * @author Tim Molderez
+ */
+final class LazyImageIcon extends ImageIcon {
+	private final URL location;
+	private boolean loaded = false;
+
+	/*
+	 * Constructor
+	 * @param location		location of the image
+	 */
+	LazyImageIcon(URL location) {
+		super();
+		this.location = location;
+	}
+
+	public Image getImage() {
+		load();
+		return super.getImage();
+	}
+
+	public int getImageLoadStatus() {
+		load();
+		return super.getImageLoadStatus();
+	}
+
+	public int getIconWidth() {
+		load();
+		return super.getIconWidth();
+	}
+
+	public int getIconHeight() {
+		load();
+		return super.getIconHeight();
+	}
+
+	public void paintIcon(Component c, Graphics g, int x, int y) {
+		load();
+		super.paintIcon(c, g, x, y);
+	}
+
+	/*
+	 * Loads the image, if that didn't happen yet
+	 */
+	private synchronized void load() {
+		if (!loaded) {
+			loaded = true;
+			setImage(Toolkit.getDefaultToolkit().getImage(location));
+		}
+	}
+
+	private static final long serialVersionUID = -3489185396398622514L;
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.util.ArrayList;
+import java.util.EventListener;
+import java.util.HashSet;
+
+import javax.swing.JComponent;
+import javax.swing.JLayeredPane;
+
+import net.java.balloontip.utils.AnimationScheduler;
+
+/**
+ * Detects balloon tips that were leaked, because their attached component was disposed of without closing the balloon tip
+ * Such a balloon tip stays on its top-level container, and keeps its attached component (and everything that component refers to) in memory.
+ * A balloon tip is considered leaked if its attached component is still not displayable after a grace period,
+ * while the balloon tip's top-level container is. Leaks are reported to the registered leak listeners,
+ * and leaked balloon tips can optionally be closed automatically.
+ * As long as there are no leak listeners and automatic closing is disabled, the detector does nothing.
+ * (Like Swing components, this class should only be used on the event dispatch thread.)
+ * @author Tim Molderez
+ */
+public final class LeakDetector {
+
+	/**
+	 * Is notified whenever a leaked balloon tip is detected
+	 */
+	public interface LeakListener extends EventListener {
+		/**
+		 * A leaked balloon tip was detected
+		 * @param balloon		the balloon tip, whose attached component was disposed of without closing the balloon tip
+		 */
+		void balloonTipLeaked(BalloonTip balloon);
+	}
+
+	private static final ArrayList<LeakListener> listeners = new ArrayList<LeakListener>();
+	private static final HashSet<BalloonTip> pending = new HashSet<BalloonTip>();	// Balloon tips that are suspected to leak, and are waiting for their grace period to end
+	private static int gracePeriod = 5000;		// Time an attached component may stay undisplayable before its balloon tip is considered leaked (in ms)
+	private static boolean autoClose = false;
+	private static long leaks = 0;
+
+	/*
+	 * Disallow instantiating this class
+	 */
+	private LeakDetector() {}
+
+	/**
+	 * Register a leak listener
+	 * @param listener		the listener
+	 */
+	public static void addLeakListener(LeakListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Unregister a leak listener
+	 * @param listener		the listener
+	 */
+	public static void removeLeakListener(LeakListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Set the time an attached component may stay undisplayable before its balloon tip is considered leaked
+	 * (This allows for components that are only temporarily removed from their container.)
+	 * @param time		the grace period (in ms)
+	 */
+	public static void setGracePeriod(int time) {
+		gracePeriod = time;
+	}
+
+	/**
+	 * Get the time an attached component may stay undisplayable before its balloon tip is considered leaked
+	 * @return			the grace period (in ms)
+	 */
+	public static int getGracePeriod() {
+		return gracePeriod;
+	}
+
+	/**
+	 * Enable/disable closing leaked balloon tips automatically
+	 * @param enable	if true, leaked balloon tips are closed (after the leak listeners have been notified)
+	 */
+	public static void enableAutoClose(boolean enable) {
+		autoClose = enable;
+	}
+
+	/**
+	 * Are leaked balloon tips closed automatically?
+	 * @return			true if leaked balloon tips are closed automatically
+	 */
+	public static boolean isAutoClose() {
+		return autoClose;
+	}
+
+	/**
+	 * Get the number of leaked balloon tips that were detected
+	 * @return			number of leaks
+	 */
+	public static long getLeakCount() {
+		return leaks;
+	}
+
+	/*
+	 * Called by a balloon tip when its attached component is no longer displayable
+	 * If the component is still not displayable once the grace period has passed, the balloon tip is reported as leaked.
+	 * @param balloon		the balloon tip
+	 */
+	static void attachedComponentDisposed(final BalloonTip balloon) {
+		if ((listeners.isEmpty() && !autoClose) || !pending.add(balloon)) {
+			return;
+		}
+		AnimationScheduler.schedule(new AnimationScheduler.Task() {
+			public long pulse(long now) {
+				pending.remove(balloon);
+				if (isLeaked(balloon)) {
+					++leaks;
+					for (LeakListener listener : listeners.toArray(new LeakListener[listeners.size()])) {
+						listener.balloonTipLeaked(balloon);
+					}
+					if (autoClose) {
+						balloon.closeBalloon();
+					}
+				}
+				return -1;
+			}
+		}, gracePeriod);
+	}
+
+	/*
+	 * Is the balloon tip still open, while its attached component is disposed of?
+	 */
+	private static boolean isLeaked(BalloonTip balloon) {
+		JLayeredPane topLevelContainer = balloon.getTopLevelContainer();
+		JComponent attachedComponent = balloon.getAttachedComponent();
+		// If the top-level container was disposed of as well, the balloon tip simply goes down along with its window
+		return topLevelContainer != null && topLevelContainer.isDisplayable()
+				&& attachedComponent != null && !attachedComponent.isDisplayable();
+	}
+}
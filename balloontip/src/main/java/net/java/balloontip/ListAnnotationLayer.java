@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.awt.Rectangle;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.swing.JList;
+import javax.swing.ListModel;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import net.java.balloontip.styles.BalloonTipStyle;
+
+/**
+ * An annotation layer for the items of a JList
+ * Annotations move along when items are added or removed before them, and are removed along with their item.
+ * If the list gets a new model, all annotations are removed.
+ * @author Tim Molderez
+ */
+public class ListAnnotationLayer extends AnnotationLayer<Integer> {
+	private final TreeMap<Integer, String> annotations = new TreeMap<Integer, String>();	// Sorted by index, so the visible ones are found quickly
+	private ListModel<?> model;
+
+	// If list data is added or removed, adjust the annotations
+	private final ListDataListener dataListener = new ListDataListener() {
+		public void intervalAdded(ListDataEvent e) {
+			shiftIndices(annotations, e.getIndex0(), e.getIndex1() - e.getIndex0() + 1);
+			refreshLater();
+		}
+
+		public void intervalRemoved(ListDataEvent e) {
+			annotations.subMap(e.getIndex0(), e.getIndex1() + 1).clear();
+			shiftIndices(annotations, e.getIndex1() + 1, -(e.getIndex1() - e.getIndex0() + 1));
+			refreshLater();
+		}
+
+		public void contentsChanged(ListDataEvent e) {
+			refreshLater(); // The items' sizes might've changed..
+		}
+	};
+
+	// Follow the list if it gets a new model
+	private final PropertyChangeListener modelListener = new PropertyChangeListener() {
+		public void propertyChange(PropertyChangeEvent e) {
+			model.removeListDataListener(dataListener);
+			model = getList().getModel();
+			model.addListDataListener(dataListener);
+			clearAnnotations(); // They refer to the items of the old model
+		}
+	};
+
+	/**
+	 * Constructor
+	 * @see net.java.balloontip.AnnotationLayer#AnnotationLayer(javax.swing.JComponent, BalloonTipStyle, BalloonTip.Orientation, BalloonTip.AttachLocation, int, int)
+	 * @param list		the list whose items are annotated (may not be null)
+	 */
+	public ListAnnotationLayer(JList<?> list, BalloonTipStyle style, BalloonTip.Orientation orientation, BalloonTip.AttachLocation attachLocation,
+			int horizontalOffset, int verticalOffset) {
+		super(list, style, orientation, attachLocation, horizontalOffset, verticalOffset);
+		model = list.getModel();
+		model.addListDataListener(dataListener);
+		list.addPropertyChangeListener("model", modelListener);
+	}
+
+	/**
+	 * Annotate a list item
+	 * @param index		index of the list item
+	 * @param text		the annotation (may contain HTML); if null, the item's annotation is removed
+	 */
+	public void setAnnotation(int index, String text) {
+		if (text == null) {
+			removeAnnotation(index);
+			return;
+		}
+		annotations.put(index, text);
+		refreshLater();
+	}
+
+	/**
+	 * Get the annotation of a list item
+	 * @param index		index of the list item
+	 * @return			the annotation, or null if the item isn't annotated
+	 */
+	public String getAnnotation(int index) {
+		return annotations.get(index);
+	}
+
+	/**
+	 * Remove the annotation of a list item
+	 * @param index		index of the list item
+	 */
+	public void removeAnnotation(int index) {
+		if (annotations.remove(index) != null) {
+			refreshLater();
+		}
+	}
+
+	public int getAnnotationCount() {
+		return annotations.size();
+	}
+
+	public void clearAnnotations() {
+		annotations.clear();
+		refreshLater();
+	}
+
+	public void dispose() {
+		model.removeListDataListener(dataListener);
+		getList().removePropertyChangeListener("model", modelListener);
+		super.dispose();
+	}
+
+	protected void collectVisible(Rectangle visibleRect, Map<Integer, String> result) {
+		JList<?> list = getList();
+		int first = list.getFirstVisibleIndex();
+		int last = list.getLastVisibleIndex();
+		if (first < 0) {
+			return;
+		}
+		for (Map.Entry<Integer, String> entry : annotations.subMap(first, last + 1).entrySet()) {
+			Rectangle bounds = list.getCellBounds(entry.getKey(), entry.getKey());
+			if (bounds != null && bounds.intersects(visibleRect)) {
+				result.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	protected Rectangle getItemBounds(Integer index) {
+		return getList().getCellBounds(index, index);
+	}
+
+	/*
+	 * Retrieve the JList whose items are annotated
+	 * @return			the list
+	 */
+	private JList<?> getList() {
+		return (JList<?>) component;
+	}
+}
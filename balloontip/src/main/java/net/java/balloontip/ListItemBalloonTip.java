@@ -28,28 +28,43 @@ public class ListItemBalloonTip extends CustomBalloonTip {
 	// If list data is added or removed, adjust the balloon tip
 	private final ListDataListener dataListener = new ListDataListener() {
 		public void intervalAdded(ListDataEvent e) {
-			// If the balloon tip needs to move down
-			if (e.getIndex1() <= index) {
-				index+=e.getIndex1()-e.getIndex0()+1;
+			long start = StallWatchdog.enter(ListItemBalloonTip.this, "intervalAdded", e);
+			try {
+				// If the balloon tip needs to move down
+				if (e.getIndex1() <= index) {
+					index+=e.getIndex1()-e.getIndex0()+1;
+				}
+				setItemPosition(index);
+			} finally {
+				StallWatchdog.exit(start);
 			}
-			setItemPosition(index);
 		}
 
 		public void intervalRemoved(ListDataEvent e) {
-			// If the balloon tip needs to move up
-			if (e.getIndex1() < index) {
-				index-=e.getIndex1()-e.getIndex0()+1;
-				setItemPosition(index);
-			// If the item with the balloon tip is removed
-			} else if (index >= e.getIndex0() && index <= e.getIndex1()) {
-				closeBalloon();
-			} else {
-				setItemPosition(index);
+			long start = StallWatchdog.enter(ListItemBalloonTip.this, "intervalRemoved", e);
+			try {
+				// If the balloon tip needs to move up
+				if (e.getIndex1() < index) {
+					index-=e.getIndex1()-e.getIndex0()+1;
+					setItemPosition(index);
+				// If the item with the balloon tip is removed
+				} else if (index >= e.getIndex0() && index <= e.getIndex1()) {
+					closeBalloon();
+				} else {
+					setItemPosition(index);
+				}
+			} finally {
+				StallWatchdog.exit(start);
 			}
 		}
 
 		public void contentsChanged(ListDataEvent e) {
-			setItemPosition(index); // Refreshes the item's position, in case it might've changed..
+			long start = StallWatchdog.enter(ListItemBalloonTip.this, "contentsChanged", e);
+			try {
+				setItemPosition(index); // Refreshes the item's position, in case it might've changed..
+			} finally {
+				StallWatchdog.exit(start);
+			}
 		}
 	};
 	
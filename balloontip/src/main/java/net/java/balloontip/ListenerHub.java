@@ -0,0 +1,298 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.awt.Component;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.EventListener;
+import java.util.LinkedHashMap;
+
+/**
+ * Shares listeners among balloon tips
+ * Rather than having each balloon tip register its own listener on a component (its top-level container, tabs, ...),
+ * only one dispatcher is registered per component, which forwards each event to the balloon tips that are interested in that component.
+ * An event on a component thus only reaches the balloon tips that depend on it, and adding or removing a balloon tip's listener
+ * takes constant time, no matter how many other balloon tips listen to the same component.
+ * Listeners are only weakly referenced, so a component doesn't keep a balloon tip alive just because it's listening to it.
+ * (The caller should therefore hold on to its listeners for as long as they're registered.)
+ * Listeners that were garbage collected are removed from their dispatcher the next time a listener is added or removed.
+ * (Like Swing components, this class should only be used on the event dispatch thread.)
+ * @author Tim Molderez
+ */
+final class ListenerHub {
+	private static final ReferenceQueue<EventListener> staleListeners = new ReferenceQueue<EventListener>();
+
+	/*
+	 * Disallow instantiating this class
+	 */
+	private ListenerHub() {}
+
+	/*
+	 * Register a component listener, through the component's dispatcher
+	 * @param component		the component to listen to
+	 * @param listener		the listener
+	 */
+	static void addComponentListener(Component component, ComponentListener listener) {
+		expungeStaleListeners();
+		ComponentDispatcher dispatcher = getComponentDispatcher(component);
+		if (dispatcher == null) {
+			dispatcher = new ComponentDispatcher(component);
+			component.addComponentListener(dispatcher);
+		}
+		dispatcher.add(listener);
+	}
+
+	/*
+	 * Unregister a component listener (the dispatcher itself is removed once it has no more listeners)
+	 * @param component		the component that was listened to
+	 * @param listener		the listener
+	 */
+	static void removeComponentListener(Component component, ComponentListener listener) {
+		expungeStaleListeners();
+		ComponentDispatcher dispatcher = getComponentDispatcher(component);
+		if (dispatcher != null && dispatcher.remove(listener) && dispatcher.isEmpty()) {
+			dispatcher.uninstall(component);
+		}
+	}
+
+	/*
+	 * Register a hierarchy listener, through the component's dispatcher
+	 * @param component		the component to listen to
+	 * @param listener		the listener
+	 */
+	static void addHierarchyListener(Component component, HierarchyListener listener) {
+		expungeStaleListeners();
+		HierarchyDispatcher dispatcher = getHierarchyDispatcher(component);
+		if (dispatcher == null) {
+			dispatcher = new HierarchyDispatcher(component);
+			component.addHierarchyListener(dispatcher);
+		}
+		dispatcher.add(listener);
+	}
+
+	/*
+	 * Unregister a hierarchy listener (the dispatcher itself is removed once it has no more listeners)
+	 * @param component		the component that was listened to
+	 * @param listener		the listener
+	 */
+	static void removeHierarchyListener(Component component, HierarchyListener listener) {
+		expungeStaleListeners();
+		HierarchyDispatcher dispatcher = getHierarchyDispatcher(component);
+		if (dispatcher != null && dispatcher.remove(listener) && dispatcher.isEmpty()) {
+			dispatcher.uninstall(component);
+		}
+	}
+
+	/*
+	 * Find the dispatcher that was registered on a component (null if there is none)
+	 * (The dispatcher is looked up in the component's own listener list, so the hub itself doesn't need to keep track of any components.)
+	 */
+	private static ComponentDispatcher getComponentDispatcher(Component component) {
+		for (ComponentListener listener : component.getComponentListeners()) {
+			if (listener instanceof ComponentDispatcher) {
+				return (ComponentDispatcher) listener;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Find the hierarchy dispatcher that was registered on a component (null if there is none)
+	 */
+	private static HierarchyDispatcher getHierarchyDispatcher(Component component) {
+		for (HierarchyListener listener : component.getHierarchyListeners()) {
+			if (listener instanceof HierarchyDispatcher) {
+				return (HierarchyDispatcher) listener;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Removes the listeners that were garbage collected from their dispatchers,
+	 * and removes dispatchers that have no more listeners from their components
+	 */
+	private static void expungeStaleListeners() {
+		ListenerRef ref;
+		while ((ref = (ListenerRef) staleListeners.poll()) != null) {
+			Dispatcher<?> dispatcher = ref.dispatcher;
+			if (dispatcher.removeRef(ref) && dispatcher.isEmpty()) {
+				Component component = dispatcher.component.get();
+				if (component != null) {
+					dispatcher.uninstall(component);
+				}
+			}
+		}
+	}
+
+	/*
+	 * A weak reference to a listener, which remembers the dispatcher it's registered with
+	 */
+	private static final class ListenerRef extends WeakReference<EventListener> {
+		private final Dispatcher<?> dispatcher;
+		private final int hash;		// Identity hash code of the listener (still valid once the listener is garbage collected)
+
+		ListenerRef(EventListener listener, Dispatcher<?> dispatcher) {
+			super(listener, staleListeners);
+			this.dispatcher = dispatcher;
+			this.hash = System.identityHashCode(listener);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/*
+	 * Finds the reference to a listener in a dispatcher, by the listener's identity
+	 * (Only used as an argument to look up a ListenerRef; the dispatcher's keys are the references themselves.)
+	 */
+	private static final class ListenerKey {
+		private final EventListener listener;
+
+		ListenerKey(EventListener listener) {
+			this.listener = listener;
+		}
+
+		public int hashCode() {
+			return System.identityHashCode(listener);
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof ListenerRef && ((ListenerRef) o).get() == listener;
+		}
+	}
+
+	/*
+	 * Keeps track of the listeners that are interested in one particular component
+	 */
+	private static abstract class Dispatcher<L extends EventListener> {
+		private final LinkedHashMap<Object, ListenerRef> listeners = new LinkedHashMap<Object, ListenerRef>();	// Keeps the order in which listeners were added
+		private ListenerRef[] snapshot = null;		// The listeners to notify; rebuilt after the listeners have changed
+		private final WeakReference<Component> component;
+
+		Dispatcher(Component component) {
+			this.component = new WeakReference<Component>(component);
+		}
+
+		/*
+		 * Removes this dispatcher from its component
+		 */
+		abstract void uninstall(Component component);
+
+		void add(L listener) {
+			ListenerRef ref = new ListenerRef(listener, this);
+			listeners.put(ref, ref);
+			snapshot = null;
+		}
+
+		boolean remove(L listener) {
+			ListenerRef ref = listeners.remove(new ListenerKey(listener));
+			if (ref == null) {
+				return false;
+			}
+			ref.clear();
+			snapshot = null;
+			return true;
+		}
+
+		boolean removeRef(ListenerRef ref) {
+			if (listeners.remove(ref) == null) {
+				return false;
+			}
+			snapshot = null;
+			return true;
+		}
+
+		boolean isEmpty() {
+			return listeners.isEmpty();
+		}
+
+		/*
+		 * Get the listeners that should be notified of an event (a listener that was garbage collected meanwhile refers to null)
+		 * (Listeners may add/remove listeners while being notified, so this is a snapshot rather than the actual list.)
+		 */
+		ListenerRef[] getListeners() {
+			if (snapshot == null) {
+				snapshot = listeners.values().toArray(new ListenerRef[listeners.size()]);
+			}
+			return snapshot;
+		}
+	}
+
+	/*
+	 * Forwards component events
+	 */
+	private static final class ComponentDispatcher extends Dispatcher<ComponentListener> implements ComponentListener {
+		ComponentDispatcher(Component component) {
+			super(component);
+		}
+		void uninstall(Component component) {
+			component.removeComponentListener(this);
+		}
+		public void componentResized(ComponentEvent e) {
+			for (ListenerRef ref : getListeners()) {
+				ComponentListener listener = (ComponentListener) ref.get();
+				if (listener != null) {
+					listener.componentResized(e);
+				}
+			}
+		}
+		public void componentMoved(ComponentEvent e) {
+			for (ListenerRef ref : getListeners()) {
+				ComponentListener listener = (ComponentListener) ref.get();
+				if (listener != null) {
+					listener.componentMoved(e);
+				}
+			}
+		}
+		public void componentShown(ComponentEvent e) {
+			for (ListenerRef ref : getListeners()) {
+				ComponentListener listener = (ComponentListener) ref.get();
+				if (listener != null) {
+					listener.componentShown(e);
+				}
+			}
+		}
+		public void componentHidden(ComponentEvent e) {
+			for (ListenerRef ref : getListeners()) {
+				ComponentListener listener = (ComponentListener) ref.get();
+				if (listener != null) {
+					listener.componentHidden(e);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Forwards hierarchy events
+	 */
+	private static final class HierarchyDispatcher extends Dispatcher<HierarchyListener> implements HierarchyListener {
+		HierarchyDispatcher(Component component) {
+			super(component);
+		}
+		void uninstall(Component component) {
+			component.removeHierarchyListener(this);
+		}
+		public void hierarchyChanged(HierarchyEvent e) {
+			for (ListenerRef ref : getListeners()) {
+				HierarchyListener listener = (HierarchyListener) ref.get();
+				if (listener != null) {
+					listener.hierarchyChanged(e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,419 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.awt.AWTEvent;
+import java.beans.PropertyChangeEvent;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EventListener;
+import java.util.EventObject;
+import java.util.List;
+
+import javax.swing.JComponent;
+
+/**
+ * Diagnoses whether balloon tips are responsible for freezing the user interface
+ * While enabled, the watchdog times the listeners that balloon tips install on other components
+ * (component, hierarchy, ancestor, viewport and tab listeners, and the listeners of table, tree and list balloon tips).
+ * Each callback that takes longer than a threshold is flagged: it's passed to the registered stall listeners,
+ * and it's kept in a ring buffer of the most recent slow callbacks, along with the event that triggered it and the balloon tip
+ * (or the component whose balloon tips it serves) it belongs to. The ring buffer can be dumped at any time, from any thread;
+ * e.g. from a thread that notices the event dispatch thread is no longer responding.
+ * The callbacks that are still running are included as well (see SlowCallback.isInProgress()), once they've exceeded the threshold,
+ * such that a callback that hangs shows up in the dump.
+ * As long as the watchdog is disabled, each callback only checks a single flag.
+ * (Apart from getSlowCallbacks(), dump() and clear(), this class should only be used on the event dispatch thread.)
+ * @author Tim Molderez
+ */
+public final class StallWatchdog {
+
+	/**
+	 * Is notified whenever a slow callback is detected
+	 */
+	public interface StallListener extends EventListener {
+		/**
+		 * A callback took longer than the threshold
+		 * @param callback		the slow callback
+		 */
+		void slowCallback(SlowCallback callback);
+	}
+
+	/**
+	 * Describes a callback that took longer than the threshold
+	 */
+	public static final class SlowCallback {
+		private final long time;
+		private final long duration;
+		private final String source;
+		private final String callback;
+		private final String event;
+		private final boolean inProgress;
+
+		/*
+		 * Constructor
+		 */
+		private SlowCallback(long time, long duration, String source, String callback, String event, boolean inProgress) {
+			this.time = time;
+			this.duration = duration;
+			this.source = source;
+			this.callback = callback;
+			this.event = event;
+			this.inProgress = inProgress;
+		}
+
+		/**
+		 * Get the time at which the callback ended
+		 * @return		the time (in ms, as returned by System.currentTimeMillis()); if the callback is still in progress,
+		 * 				the time at which it was looked up
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * Get the time the callback took
+		 * @return		the duration (in ns); if the callback is still in progress, the time it has taken so far
+		 */
+		public long getDuration() {
+			return duration;
+		}
+
+		/**
+		 * Get the balloon tip the callback belongs to
+		 * @return		the balloon tip's class and identity hash code, and those of its attached component
+		 * 				(or those of the component, for callbacks that serve all balloon tips of a component)
+		 */
+		public String getSource() {
+			return source;
+		}
+
+		/**
+		 * Get the name of the callback
+		 * @return		the name, e.g. "componentResized"
+		 */
+		public String getCallback() {
+			return callback;
+		}
+
+		/**
+		 * Get the event that triggered the callback
+		 * @return		a description of the event
+		 */
+		public String getEvent() {
+			return event;
+		}
+
+		/**
+		 * Is the callback still running?
+		 * (This is the case for a callback that hangs, e.g. because it's waiting for a lock, or that's just very slow.)
+		 * @return		true if the callback hadn't returned yet when it was looked up
+		 */
+		public boolean isInProgress() {
+			return inProgress;
+		}
+
+		public String toString() {
+			return String.format("%tF %<tT.%<tL  %.3f ms%s  %s  %s  (event: %s)", time, duration / 1000000.0,
+					inProgress ? " (still running)" : "", callback, source, event);
+		}
+	}
+
+	/*
+	 * A callback that is currently running on the event dispatch thread (callbacks may be nested)
+	 */
+	private static final class InFlight {
+		final long start;
+		final Object source;
+		final String callback;
+		final Object event;
+		final InFlight outer;	// The callback this one is nested in (or null)
+
+		InFlight(long start, Object source, String callback, Object event, InFlight outer) {
+			this.start = start;
+			this.source = source;
+			this.callback = callback;
+			this.event = event;
+			this.outer = outer;
+		}
+	}
+
+	private static final ArrayList<StallListener> listeners = new ArrayList<StallListener>();
+	private static volatile boolean enabled = false;
+	private static volatile long threshold = 16000000L;		// Callbacks that take at least this long are flagged (in ns)
+
+	// Ring buffer of the most recent slow callbacks (guarded by lock)
+	private static final Object lock = new Object();
+	private static SlowCallback[] recent = new SlowCallback[100];
+	private static int next = 0;		// Where the next slow callback is stored
+	private static int size = 0;
+	private static long slowCallbacks = 0;
+
+	private static volatile InFlight inFlight = null;	// The innermost callback that is currently running (only set while enabled)
+
+	/*
+	 * Disallow instantiating this class
+	 */
+	private StallWatchdog() {}
+
+	/**
+	 * Enable/disable the watchdog
+	 * @param enable	if true, callbacks are timed and slow callbacks are recorded
+	 */
+	public static void setEnabled(boolean enable) {
+		enabled = enable;
+	}
+
+	/**
+	 * Is the watchdog enabled?
+	 * @return			true if callbacks are being timed
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Set the time a callback may take before it is flagged as slow
+	 * @param time		the threshold (in ms)
+	 */
+	public static void setThreshold(int time) {
+		threshold = time * 1000000L;
+	}
+
+	/**
+	 * Get the time a callback may take before it is flagged as slow
+	 * @return			the threshold (in ms)
+	 */
+	public static int getThreshold() {
+		return (int) (threshold / 1000000L);
+	}
+
+	/**
+	 * Set the number of slow callbacks that are kept in the ring buffer
+	 * (The most recent ones are kept if the buffer shrinks.)
+	 * @param capacity		the ring buffer's capacity (must be at least 1)
+	 */
+	public static void setCapacity(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be at least 1");
+		}
+		synchronized (lock) {
+			List<SlowCallback> kept = getRecentCallbacks();
+			recent = new SlowCallback[capacity];
+			size = 0;
+			next = 0;
+			for (SlowCallback callback : kept.subList(Math.max(0, kept.size() - capacity), kept.size())) {
+				add(callback);
+			}
+		}
+	}
+
+	/**
+	 * Get the number of slow callbacks that are kept in the ring buffer
+	 * @return			the ring buffer's capacity
+	 */
+	public static int getCapacity() {
+		synchronized (lock) {
+			return recent.length;
+		}
+	}
+
+	/**
+	 * Register a stall listener
+	 * @param listener		the listener
+	 */
+	public static void addStallListener(StallListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Unregister a stall listener
+	 * @param listener		the listener
+	 */
+	public static void removeStallListener(StallListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Get the slow callbacks in the ring buffer, followed by the callbacks that are still running but already exceeded the threshold
+	 * @return			a new list of the most recent slow callbacks, oldest first (running callbacks from the outermost to the innermost)
+	 */
+	public static List<SlowCallback> getSlowCallbacks() {
+		List<SlowCallback> result = getRecentCallbacks();
+		result.addAll(getRunningCallbacks());
+		return result;
+	}
+
+	/**
+	 * Get the number of slow callbacks that were detected
+	 * (This includes the ones that no longer fit in the ring buffer.)
+	 * @return			number of slow callbacks
+	 */
+	public static long getSlowCallbackCount() {
+		synchronized (lock) {
+			return slowCallbacks;
+		}
+	}
+
+	/**
+	 * Empties the ring buffer, and resets the number of slow callbacks
+	 */
+	public static void clear() {
+		synchronized (lock) {
+			for (int i = 0; i < recent.length; ++i) {
+				recent[i] = null;
+			}
+			next = 0;
+			size = 0;
+			slowCallbacks = 0;
+		}
+	}
+
+	/**
+	 * Prints the slow callbacks in the ring buffer, oldest first
+	 * @param out		print to this stream (e.g. System.err)
+	 */
+	public static void dump(PrintStream out) {
+		List<SlowCallback> callbacks;
+		long count;
+		synchronized (lock) {
+			callbacks = getSlowCallbacks();
+			count = slowCallbacks;
+		}
+		out.println("Slow balloon tip callbacks (threshold " + getThreshold() + " ms): " + count + " detected, the last " + callbacks.size() + " follow");
+		for (SlowCallback callback : callbacks) {
+			out.println("  " + callback);
+		}
+		out.flush();
+	}
+
+	/*
+	 * Called at the start of a callback; exit() must be called from a finally block once the callback is done
+	 * While the watchdog is enabled, the callback is registered as running until exit() is called.
+	 * @param source	the balloon tip the callback belongs to (or the component, for callbacks that serve several balloon tips)
+	 * @param callback	name of the callback
+	 * @param event		the event that triggered the callback (may be null)
+	 * @return			the start time to pass to exit(), or 0 if the watchdog is disabled
+	 */
+	static long enter(Object source, String callback, Object event) {
+		if (!enabled) {
+			return 0;
+		}
+		long start = System.nanoTime();
+		inFlight = new InFlight(start, source, callback, event, inFlight);
+		return start;
+	}
+
+	/*
+	 * Called at the end of a callback; the callback is flagged if it took longer than the threshold
+	 * @param start		the start time, as returned by enter()
+	 */
+	static void exit(long start) {
+		if (start == 0) {
+			return;
+		}
+		InFlight running = inFlight;
+		if (running == null || running.start != start) {
+			return; // (Can't happen, as long as each enter() is matched by an exit() in a finally block)
+		}
+		inFlight = running.outer;
+		long duration = System.nanoTime() - start;
+		if (duration < threshold) {
+			return;
+		}
+
+		SlowCallback slow = new SlowCallback(System.currentTimeMillis(), duration, describeSource(running.source), running.callback,
+				describeEvent(running.event), false);
+		synchronized (lock) {
+			add(slow);
+			++slowCallbacks;
+		}
+		for (StallListener listener : listeners.toArray(new StallListener[listeners.size()])) {
+			listener.slowCallback(slow);
+		}
+	}
+
+	/*
+	 * Get the slow callbacks in the ring buffer, oldest first
+	 */
+	private static List<SlowCallback> getRecentCallbacks() {
+		synchronized (lock) {
+			ArrayList<SlowCallback> result = new ArrayList<SlowCallback>(size);
+			for (int i = 0; i < size; ++i) {
+				result.add(recent[(next - size + i + recent.length) % recent.length]);
+			}
+			return result;
+		}
+	}
+
+	/*
+	 * Get the callbacks that are still running and have already exceeded the threshold, from the outermost to the innermost
+	 * (May be called from any thread.)
+	 */
+	private static List<SlowCallback> getRunningCallbacks() {
+		ArrayList<SlowCallback> result = new ArrayList<SlowCallback>();
+		long now = System.nanoTime();
+		long time = System.currentTimeMillis();
+		for (InFlight running = inFlight; running != null; running = running.outer) {
+			long duration = now - running.start;
+			if (duration >= threshold) {
+				result.add(0, new SlowCallback(time, duration, describeSource(running.source), running.callback, describeEvent(running.event), true));
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Adds a slow callback to the ring buffer, overwriting the oldest one if the buffer is full (the lock must be held)
+	 */
+	private static void add(SlowCallback callback) {
+		recent[next] = callback;
+		next = (next + 1) % recent.length;
+		if (size < recent.length) {
+			++size;
+		}
+	}
+
+	/*
+	 * Describes a balloon tip by its identity and that of its attached component
+	 * (Only descriptions are kept, such that the ring buffer doesn't keep any components in memory.)
+	 */
+	private static String describeSource(Object source) {
+		if (source instanceof BalloonTip) {
+			JComponent attachedComponent = ((BalloonTip) source).getAttachedComponent();
+			return identify(source) + " attached to " + identify(attachedComponent);
+		}
+		return identify(source);
+	}
+
+	/*
+	 * Describes an event, without relying on its source's toString() (which can be very long for Swing components)
+	 */
+	private static String describeEvent(Object event) {
+		if (event instanceof AWTEvent) {
+			return event.getClass().getName() + "[" + ((AWTEvent) event).paramString() + "] on " + identify(((AWTEvent) event).getSource());
+		} else if (event instanceof PropertyChangeEvent) {
+			return event.getClass().getName() + "[" + ((PropertyChangeEvent) event).getPropertyName() + "] on " + identify(((EventObject) event).getSource());
+		} else if (event instanceof EventObject) {
+			return event.getClass().getName() + " on " + identify(((EventObject) event).getSource());
+		}
+		return identify(event);
+	}
+
+	/*
+	 * Get an object's class name and identity hash code
+	 */
+	private static String identify(Object object) {
+		if (object == null) {
+			return "null";
+		}
+		return object.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(object));
+	}
+}
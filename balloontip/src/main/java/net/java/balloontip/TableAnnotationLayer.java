@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.swing.JTable;
+import javax.swing.RowSorter;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.RowSorterEvent;
+import javax.swing.event.RowSorterListener;
+import javax.swing.event.TableColumnModelEvent;
+import javax.swing.event.TableColumnModelListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
+
+import net.java.balloontip.styles.BalloonTipStyle;
+
+/**
+ * An annotation layer for the cells of a JTable
+ * Cells are identified by their model coordinates, so annotations stay with their cell when the table is sorted or filtered,
+ * or when its columns are moved. Annotations move along when rows are inserted or deleted before them,
+ * and are removed along with their row. If the table gets a new model, all annotations are removed.
+ * @author Tim Molderez
+ */
+public class TableAnnotationLayer extends AnnotationLayer<TableAnnotationLayer.Cell> {
+
+	/**
+	 * Identifies a table cell, in model coordinates
+	 */
+	public static final class Cell {
+		private final int row;
+		private final int column;
+
+		/**
+		 * Constructor
+		 * @param row		row index in the table model
+		 * @param column	column index in the table model
+		 */
+		public Cell(int row, int column) {
+			this.row = row;
+			this.column = column;
+		}
+
+		/**
+		 * Get the cell's row
+		 * @return		row index in the table model
+		 */
+		public int getRow() {
+			return row;
+		}
+
+		/**
+		 * Get the cell's column
+		 * @return		column index in the table model
+		 */
+		public int getColumn() {
+			return column;
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof Cell && ((Cell) o).row == row && ((Cell) o).column == column;
+		}
+
+		public int hashCode() {
+			return row * 31 + column;
+		}
+	}
+
+	// Per model row, the annotations of its cells (by model column); sorted by row, so the visible ones are found quickly
+	private final TreeMap<Integer, HashMap<Integer, String>> annotations = new TreeMap<Integer, HashMap<Integer, String>>();
+	private int count = 0;
+
+	private TableModel model;
+	private RowSorter<?> sorter;
+	private TableColumnModel columnModel;
+
+	private final TableModelListener modelListener = new TableModelListener() {
+		public void tableChanged(TableModelEvent e) {
+			int first = e.getFirstRow();
+			int last = e.getLastRow();
+			if (first != TableModelEvent.HEADER_ROW && last != Integer.MAX_VALUE) {
+				if (e.getType() == TableModelEvent.INSERT) {
+					shiftIndices(annotations, first, last - first + 1);
+				} else if (e.getType() == TableModelEvent.DELETE) {
+					// If rows with annotations are removed
+					Map<Integer, HashMap<Integer, String>> removed = annotations.subMap(first, last + 1);
+					for (HashMap<Integer, String> row : removed.values()) {
+						count -= row.size();
+					}
+					removed.clear();
+					shiftIndices(annotations, last + 1, -(last - first + 1));
+				}
+			}
+			refreshLater();
+		}
+	};
+
+	// Cells move when the table is sorted, or when its columns are modified
+	private final RowSorterListener sorterListener = new RowSorterListener() {
+		public void sorterChanged(RowSorterEvent e) {
+			refreshLater();
+		}
+	};
+
+	private final TableColumnModelListener columnListener = new TableColumnModelListener() {
+		public void columnAdded(TableColumnModelEvent e) {refreshLater();}
+		public void columnRemoved(TableColumnModelEvent e) {refreshLater();}
+		public void columnMoved(TableColumnModelEvent e) {
+			if (e.getFromIndex() != e.getToIndex()) {
+				refreshLater();
+			}
+		}
+		public void columnMarginChanged(ChangeEvent e) {refreshLater();}
+		public void columnSelectionChanged(ListSelectionEvent e) {}
+	};
+
+	// Follow the table if it gets a new model, sorter or column model
+	private final PropertyChangeListener tableListener = new PropertyChangeListener() {
+		public void propertyChange(PropertyChangeEvent e) {
+			String property = e.getPropertyName();
+			if ("model".equals(property) || "rowSorter".equals(property) || "columnModel".equals(property)) {
+				uninstall();
+				install();
+				if ("model".equals(property)) {
+					clearAnnotations(); // They refer to the rows of the old model
+				}
+				refreshLater();
+			} else if ("rowHeight".equals(property) || "rowMargin".equals(property)) {
+				refreshLater();
+			}
+		}
+	};
+
+	/**
+	 * Constructor
+	 * @see net.java.balloontip.AnnotationLayer#AnnotationLayer(javax.swing.JComponent, BalloonTipStyle, BalloonTip.Orientation, BalloonTip.AttachLocation, int, int)
+	 * @param table		the table whose cells are annotated (may not be null)
+	 */
+	public TableAnnotationLayer(JTable table, BalloonTipStyle style, BalloonTip.Orientation orientation, BalloonTip.AttachLocation attachLocation,
+			int horizontalOffset, int verticalOffset) {
+		super(table, style, orientation, attachLocation, horizontalOffset, verticalOffset);
+		install();
+		table.addPropertyChangeListener(tableListener);
+	}
+
+	/**
+	 * Annotate a table cell
+	 * @param row		row index in the table model
+	 * @param column	column index in the table model
+	 * @param text		the annotation (may contain HTML); if null, the cell's annotation is removed
+	 */
+	public void setAnnotation(int row, int column, String text) {
+		if (text == null) {
+			removeAnnotation(row, column);
+			return;
+		}
+		HashMap<Integer, String> cells = annotations.get(row);
+		if (cells == null) {
+			cells = new HashMap<Integer, String>(4);
+			annotations.put(row, cells);
+		}
+		if (cells.put(column, text) == null) {
+			++count;
+		}
+		refreshLater();
+	}
+
+	/**
+	 * Get the annotation of a table cell
+	 * @param row		row index in the table model
+	 * @param column	column index in the table model
+	 * @return			the annotation, or null if the cell isn't annotated
+	 */
+	public String getAnnotation(int row, int column) {
+		HashMap<Integer, String> cells = annotations.get(row);
+		return cells == null ? null : cells.get(column);
+	}
+
+	/**
+	 * Remove the annotation of a table cell
+	 * @param row		row index in the table model
+	 * @param column	column index in the table model
+	 */
+	public void removeAnnotation(int row, int column) {
+		HashMap<Integer, String> cells = annotations.get(row);
+		if (cells != null && cells.remove(column) != null) {
+			--count;
+			if (cells.isEmpty()) {
+				annotations.remove(row);
+			}
+			refreshLater();
+		}
+	}
+
+	public int getAnnotationCount() {
+		return count;
+	}
+
+	public void clearAnnotations() {
+		annotations.clear();
+		count = 0;
+		refreshLater();
+	}
+
+	public void dispose() {
+		uninstall();
+		getTable().removePropertyChangeListener(tableListener);
+		super.dispose();
+	}
+
+	protected void collectVisible(Rectangle visibleRect, Map<Cell, String> result) {
+		JTable table = getTable();
+		if (table.getRowCount() == 0) {
+			return;
+		}
+		int first = table.rowAtPoint(new Point(visibleRect.x, visibleRect.y));
+		int last = table.rowAtPoint(new Point(visibleRect.x, visibleRect.y + visibleRect.height - 1));
+		if (first < 0) {
+			return;
+		}
+		if (last < 0) {
+			last = table.getRowCount() - 1;
+		}
+
+		if (table.getRowSorter() == null) {
+			// View rows are model rows, so only the annotated rows in view need to be visited
+			for (Map.Entry<Integer, HashMap<Integer, String>> entry : annotations.subMap(first, last + 1).entrySet()) {
+				collectVisible(entry.getKey(), entry.getKey(), entry.getValue(), visibleRect, result);
+			}
+		} else {
+			// Only the rows in view are converted, no matter how many rows the table has
+			for (int row = first; row <= last; ++row) {
+				int modelRow = table.convertRowIndexToModel(row);
+				HashMap<Integer, String> cells = annotations.get(modelRow);
+				if (cells != null) {
+					collectVisible(row, modelRow, cells, visibleRect, result);
+				}
+			}
+		}
+	}
+
+	protected Rectangle getItemBounds(Cell cell) {
+		JTable table = getTable();
+		if (cell.row >= table.getModel().getRowCount()) {
+			return null;
+		}
+		int row = table.convertRowIndexToView(cell.row);
+		int column = table.convertColumnIndexToView(cell.column);
+		if (row < 0 || column < 0) {
+			return null;
+		}
+		return table.getCellRect(row, column, true);
+	}
+
+	/*
+	 * Find the annotations of one row whose cell intersects with the visible area
+	 */
+	private void collectVisible(int row, int modelRow, HashMap<Integer, String> cells, Rectangle visibleRect, Map<Cell, String> result) {
+		JTable table = getTable();
+		for (Map.Entry<Integer, String> entry : cells.entrySet()) {
+			int column = table.convertColumnIndexToView(entry.getKey());
+			if (column >= 0 && table.getCellRect(row, column, true).intersects(visibleRect)) {
+				result.put(new Cell(modelRow, entry.getKey()), entry.getValue());
+			}
+		}
+	}
+
+	/*
+	 * Registers the layer with the table's current model, row sorter and column model
+	 */
+	private void install() {
+		JTable table = getTable();
+		model = table.getModel();
+		sorter = table.getRowSorter();
+		columnModel = table.getColumnModel();
+		model.addTableModelListener(modelListener);
+		if (sorter != null) {
+			sorter.addRowSorterListener(sorterListener);
+		}
+		columnModel.addColumnModelListener(columnListener);
+	}
+
+	/*
+	 * Unregisters the layer from the table's model, row sorter and column model
+	 */
+	private void uninstall() {
+		model.removeTableModelListener(modelListener);
+		if (sorter != null) {
+			sorter.removeRowSorterListener(sorterListener);
+		}
+		columnModel.removeColumnModelListener(columnListener);
+	}
+
+	/*
+	 * Retrieve the JTable whose cells are annotated
+	 * @return			the table
+	 */
+	private JTable getTable() {
+		return (JTable) component;
+	}
+}
@@ -12,60 +12,27 @@ package net.java.balloontip;
 import javax.swing.JButton;
 import javax.swing.JComponent;
 import javax.swing.JTable;
-import javax.swing.event.ChangeEvent;
-import javax.swing.event.ListSelectionEvent;
-import javax.swing.event.TableColumnModelEvent;
-import javax.swing.event.TableColumnModelListener;
 
 import net.java.balloontip.positioners.BalloonTipPositioner;
 import net.java.balloontip.styles.BalloonTipStyle;
 
 /**
  * Provides similar functionality as a CustomBalloonTip, but attaches itself to a cell in a JTable
+ * The balloon tip follows its cell when rows are inserted, deleted, sorted or filtered, and when columns are moved.
+ * If its row is filtered out, the balloon tip is hidden; if its row or column is removed, the balloon tip is closed.
  * @author Tim Molderez
  */
 public class TableCellBalloonTip extends CustomBalloonTip {
 	protected int row;
 	protected int column;
 
-	// Adjust the balloon tip's position when the table's columns are modified
-	private final TableColumnModelListener columnListener = new TableColumnModelListener()  {
-		public void columnAdded(TableColumnModelEvent e) {
-			if (e.getToIndex() <= column) {
-				setCellPosition(row, column+1);
-			} else {
-				setCellPosition(row, column);
-			}
-		}
-		public void columnMarginChanged(ChangeEvent e) {setCellPosition(row, column);}
-		public void columnMoved(TableColumnModelEvent e) {
-			// If the column with the balloon tip is being moved
-			if (column == e.getFromIndex()) {
-				setCellPosition(row, e.getToIndex());
-			// If both source and target columns are before/after the column with the balloon tip
-			} else if ((e.getFromIndex() > column && e.getToIndex() > column)
-					|| (e.getFromIndex() < column && e.getToIndex() < column)) {
-				setCellPosition(row, column);
-			// Moving a column before the balloon tip to a column after the balloon tip
-			} else if(e.getFromIndex() < column && e.getToIndex() >= column) {
-				setCellPosition(row, column-1);
-			// Moving a column after the balloon tip to a column before the balloon tip
-			} else if(e.getFromIndex() > column && e.getToIndex() <= column) {
-				setCellPosition(row, column+1);
-			}
-		}
-		public void columnRemoved(TableColumnModelEvent e) {
-			if (e.getFromIndex() == column) {
-				closeBalloon();
-			} else if (e.getFromIndex() < column) {
-				setCellPosition(row, column-1);
-			} else {
-				setCellPosition(row, column);
-			}
-		}
-		public void columnSelectionChanged(ListSelectionEvent e) {}
-	};
-	
+	// The same cell in model coordinates, which are unaffected by sorting, filtering and moving columns (see TableCellTracker)
+	int modelRow;
+	int modelColumn;
+	boolean filteredOut = false;	// Is the row currently filtered out? (If so, row still holds its last view row.)
+	// Visibility criterion: the row of the table cell is visible (i.e. it isn't filtered out by the table's row sorter)
+	private static final int CRITERION_TABLE_ROW_VISIBLE = registerVisibilityCriterion("tableRowVisible");
+
 	/**
 	 * @see net.java.balloontip.BalloonTip#BalloonTip(JComponent, JComponent, BalloonTipStyle, Orientation, AttachLocation, int, int, boolean)
 	 * @param table		the table to attach the balloon tip to (may not be null)
@@ -94,28 +61,63 @@ public class TableCellBalloonTip extends CustomBalloonTip {
 	 * @param column	column of the table cell
 	 */
 	public void setCellPosition(int row, int column) {
+		JTable table = getTable();
 		this.row = row;
 		this.column = column;
-		setOffset(((JTable)attachedComponent).getCellRect(row, column, true));
+		modelRow = (row >= 0 && row < table.getRowCount()) ? table.convertRowIndexToModel(row) : row;
+		modelColumn = (column >= 0 && column < table.getColumnCount()) ? table.convertColumnIndexToModel(column) : column;
+		filteredOut = false;
+		visibilityControl.setCriterionAndUpdate(CRITERION_TABLE_ROW_VISIBLE, true);
+		setOffset(table.getCellRect(row, column, true));
 	}
 
 	public void closeBalloon() {
-		JTable table=((JTable)attachedComponent);
-		table.getColumnModel().removeColumnModelListener(columnListener);
+		TableCellTracker.unregister(getTable(), this);
 		super.closeBalloon();
 	}
 
+	/*
+	 * Called by the table's TableCellTracker when the table cell may have moved
+	 * Converts the model coordinates to view coordinates, and repositions the balloon tip accordingly.
+	 * If the table cell no longer exists, the balloon tip is closed.
+	 */
+	void updateCellPosition() {
+		JTable table = getTable();
+		int viewColumn = table.convertColumnIndexToView(modelColumn);
+		if (modelRow < 0 || modelRow >= table.getModel().getRowCount() || viewColumn < 0) {
+			closeBalloon();
+			return;
+		}
+		column = viewColumn;
+		int viewRow = table.convertRowIndexToView(modelRow);
+		filteredOut = viewRow < 0;
+		visibilityControl.setCriterionAndUpdate(CRITERION_TABLE_ROW_VISIBLE, viewRow >= 0);
+		if (viewRow >= 0) { // Might be -1 if the row is currently filtered out..
+			row = viewRow;
+			setOffset(table.getCellRect(row, column, true));
+		}
+	}
+
 	/*
 	 * A helper method needed when constructing a TablecellBalloonTip instance
 	 * @param row		the row of the cell to which this balloon tip attaches itself to
 	 * @param column	the column of the cell to which this balloon tip attaches itself to
 	 */
 	private void setup(int row, int column) {
+		JTable table = getTable();
 		this.row = row;
 		this.column = column;
+		modelRow = (row >= 0 && row < table.getRowCount()) ? table.convertRowIndexToModel(row) : row;
+		modelColumn = (column >= 0 && column < table.getColumnCount()) ? table.convertColumnIndexToModel(column) : column;
+		TableCellTracker.register(table, this);
+	}
 
-		JTable table=((JTable)attachedComponent);
-		table.getColumnModel().addColumnModelListener(columnListener);
+	/*
+	 * Retrieve the JTable the balloon tip is attached to
+	 * @return			the table
+	 */
+	private JTable getTable() {
+		return ((JTable)attachedComponent);
 	}
 
 	private static final long serialVersionUID = -8760012691273527057L;
@@ -0,0 +1,311 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+import javax.swing.JTable;
+import javax.swing.RowSorter;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.RowSorterEvent;
+import javax.swing.event.RowSorterListener;
+import javax.swing.event.TableColumnModelEvent;
+import javax.swing.event.TableColumnModelListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
+
+/**
+ * Keeps track of the balloon tips attached to the cells of one JTable
+ * Only one tracker is registered per table, which listens to the table's model, row sorter and column model on behalf of
+ * all of its balloon tips. The balloon tips remember their cell in model coordinates, so inserting or deleting rows only
+ * requires some arithmetic on the balloon tips after the modified rows, while sorting, filtering and moving columns don't
+ * change the model coordinates at all. Balloon tips whose cell may have moved are marked as dirty, and are repositioned
+ * in a single deferred pass, once the table itself has processed the event.
+ * If the table has a row sorter, the sorter reports each change of its mapping; only the balloon tips whose view row
+ * actually changed are then marked as dirty.
+ * (Like Swing components, this class should only be used on the event dispatch thread.)
+ * @author Tim Molderez
+ */
+final class TableCellTracker implements TableModelListener, RowSorterListener, TableColumnModelListener, PropertyChangeListener {
+	private static final String CLIENT_PROPERTY = TableCellTracker.class.getName();
+
+	private final JTable table;
+	private TableModel model;				// The model, sorter and column model that are currently listened to
+	private RowSorter<?> sorter;
+	private TableColumnModel columnModel;
+
+	private final ArrayList<TableCellBalloonTip> balloons = new ArrayList<TableCellBalloonTip>();	// All balloon tips attached to this table
+	private final LinkedHashSet<TableCellBalloonTip> dirty = new LinkedHashSet<TableCellBalloonTip>();	// Balloon tips waiting to be repositioned
+	private boolean scheduled = false;		// Is there a pass waiting on the event queue?
+
+	private final Runnable flushTask = new Runnable() {
+		public void run() {
+			flush();
+		}
+	};
+
+	/*
+	 * Constructor
+	 * @param table		the table that is tracked
+	 */
+	private TableCellTracker(JTable table) {
+		this.table = table;
+	}
+
+	/*
+	 * Add a balloon tip to the tracker of its table (the tracker is created if needed)
+	 * @param table		the table
+	 * @param balloon	a balloon tip attached to one of the table's cells
+	 */
+	static void register(JTable table, TableCellBalloonTip balloon) {
+		TableCellTracker tracker = (TableCellTracker) table.getClientProperty(CLIENT_PROPERTY);
+		if (tracker == null) {
+			tracker = new TableCellTracker(table);
+			table.putClientProperty(CLIENT_PROPERTY, tracker);
+			tracker.install();
+		}
+		tracker.balloons.add(balloon);
+	}
+
+	/*
+	 * Remove a balloon tip from the tracker of its table (the tracker is dropped once it's empty)
+	 * @param table		the table
+	 * @param balloon	the balloon tip
+	 */
+	static void unregister(JTable table, TableCellBalloonTip balloon) {
+		TableCellTracker tracker = (TableCellTracker) table.getClientProperty(CLIENT_PROPERTY);
+		if (tracker != null && tracker.balloons.remove(balloon)) {
+			tracker.dirty.remove(balloon);
+			if (tracker.balloons.isEmpty()) {
+				tracker.uninstall();
+				table.putClientProperty(CLIENT_PROPERTY, null);
+			}
+		}
+	}
+
+	public void tableChanged(TableModelEvent e) {
+		long start = StallWatchdog.enter(table, "tableChanged", e);
+		try {
+			/* The table itself may not have processed this event yet, so only the model coordinates are updated here;
+			 * the balloon tips are repositioned in the next pass. */
+			int first = e.getFirstRow();
+			int last = e.getLastRow();
+
+			if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+				// The structure or all of the data has changed; the pass closes the balloon tips whose cell no longer exists
+				markAllDirty();
+			} else if (e.getType() == TableModelEvent.INSERT) {
+				int count = last - first + 1;
+				for (TableCellBalloonTip balloon : balloons) {
+					if (balloon.modelRow >= first) {
+						balloon.modelRow += count;
+						markDirty(balloon);
+					}
+				}
+			} else if (e.getType() == TableModelEvent.DELETE) {
+				int count = last - first + 1;
+				ArrayList<TableCellBalloonTip> removed = null;
+				for (TableCellBalloonTip balloon : balloons) {
+					if (balloon.modelRow > last) {
+						balloon.modelRow -= count;
+						markDirty(balloon);
+					} else if (balloon.modelRow >= first) {
+						if (removed == null) {
+							removed = new ArrayList<TableCellBalloonTip>();
+						}
+						removed.add(balloon);
+					}
+				}
+				// If the row with the balloon tip is removed
+				if (removed != null) {
+					for (TableCellBalloonTip balloon : removed) {
+						balloon.closeBalloon();
+					}
+				}
+			}
+			/* (Updating a range of rows doesn't move any cells. If there's a row sorter, it also moves the view rows in front of
+			 * the modified rows; it tells us once it has updated its mapping, see sorterChanged(). This tracker is registered
+			 * with the model after the table, so it's notified before the table passes the event on to its row sorter.) */
+		} finally {
+			StallWatchdog.exit(start);
+		}
+	}
+
+	public void sorterChanged(RowSorterEvent e) {
+		long start = StallWatchdog.enter(table, "sorterChanged", e);
+		try {
+			// Only the balloon tips' own rows need to be converted, rather than the whole table
+			// (A SORT_ORDER_CHANGED event is always followed by a SORTED event, once the rows are sorted.)
+			if (e.getType() == RowSorterEvent.Type.SORTED) {
+				for (TableCellBalloonTip balloon : balloons) {
+					if (rowMoved(balloon)) {
+						markDirty(balloon);
+					}
+				}
+			}
+		} finally {
+			StallWatchdog.exit(start);
+		}
+	}
+
+	public void columnAdded(TableColumnModelEvent e) {
+		long start = StallWatchdog.enter(table, "columnAdded", e);
+		try {
+			markColumnsDirty(e.getToIndex(), Integer.MAX_VALUE);
+		} finally {
+			StallWatchdog.exit(start);
+		}
+	}
+
+	public void columnRemoved(TableColumnModelEvent e) {
+		long start = StallWatchdog.enter(table, "columnRemoved", e);
+		try {
+			markColumnsDirty(e.getFromIndex(), Integer.MAX_VALUE);
+		} finally {
+			StallWatchdog.exit(start);
+		}
+	}
+
+	public void columnMoved(TableColumnModelEvent e) {
+		long start = StallWatchdog.enter(table, "columnMoved", e);
+		try {
+			// (While a column is being dragged, this event is fired with the same from and to index.)
+			if (e.getFromIndex() != e.getToIndex()) {
+				markColumnsDirty(Math.min(e.getFromIndex(), e.getToIndex()), Math.max(e.getFromIndex(), e.getToIndex()));
+			}
+		} finally {
+			StallWatchdog.exit(start);
+		}
+	}
+
+	public void columnMarginChanged(ChangeEvent e) {
+		long start = StallWatchdog.enter(table, "columnMarginChanged", e);
+		try {
+			// Column widths have changed, but the event doesn't tell which ones
+			markAllDirty();
+		} finally {
+			StallWatchdog.exit(start);
+		}
+	}
+
+	public void columnSelectionChanged(ListSelectionEvent e) {}
+
+	public void propertyChange(PropertyChangeEvent e) {
+		long start = StallWatchdog.enter(table, "tablePropertyChanged", e);
+		try {
+			String property = e.getPropertyName();
+			if ("model".equals(property) || "rowSorter".equals(property) || "columnModel".equals(property)) {
+				uninstall();
+				install();
+				markAllDirty();
+			} else if ("rowHeight".equals(property) || "rowMargin".equals(property)) {
+				markAllDirty();
+			}
+		} finally {
+			StallWatchdog.exit(start);
+		}
+	}
+
+	/*
+	 * Registers the tracker with the table, and with its current model, row sorter and column model
+	 */
+	private void install() {
+		model = table.getModel();
+		sorter = table.getRowSorter();
+		columnModel = table.getColumnModel();
+		table.addPropertyChangeListener(this);
+		model.addTableModelListener(this);
+		if (sorter != null) {
+			sorter.addRowSorterListener(this);
+		}
+		columnModel.addColumnModelListener(this);
+	}
+
+	/*
+	 * Unregisters the tracker from everything it's listening to
+	 */
+	private void uninstall() {
+		table.removePropertyChangeListener(this);
+		model.removeTableModelListener(this);
+		if (sorter != null) {
+			sorter.removeRowSorterListener(this);
+		}
+		columnModel.removeColumnModelListener(this);
+	}
+
+	/*
+	 * Marks the balloon tips attached to a range of (view) columns as dirty
+	 * @param from		first column of the range
+	 * @param to		last column of the range
+	 */
+	private void markColumnsDirty(int from, int to) {
+		for (TableCellBalloonTip balloon : balloons) {
+			if (balloon.column >= from && balloon.column <= to) {
+				markDirty(balloon);
+			}
+		}
+	}
+
+	/*
+	 * Has the view row of a balloon tip changed, according to the row sorter's current mapping?
+	 */
+	private boolean rowMoved(TableCellBalloonTip balloon) {
+		if (balloon.modelRow < 0 || balloon.modelRow >= sorter.getModelRowCount()) {
+			return true; // The row no longer exists; the pass closes the balloon tip
+		}
+		int viewRow = sorter.convertRowIndexToView(balloon.modelRow);
+		if (viewRow < 0) {
+			return !balloon.filteredOut;
+		}
+		return balloon.filteredOut || viewRow != balloon.row;
+	}
+
+	private void markAllDirty() {
+		for (TableCellBalloonTip balloon : balloons) {
+			markDirty(balloon);
+		}
+	}
+
+	/*
+	 * Marks a balloon tip such that it is repositioned in the next pass
+	 */
+	private void markDirty(TableCellBalloonTip balloon) {
+		dirty.add(balloon);
+		if (!scheduled) {
+			scheduled = true;
+			SwingUtilities.invokeLater(flushTask);
+		}
+	}
+
+	/*
+	 * Repositions all dirty balloon tips
+	 */
+	private void flush() {
+		scheduled = false;
+		// Repositioning may close balloon tips, so work on a copy
+		TableCellBalloonTip[] batch = dirty.toArray(new TableCellBalloonTip[dirty.size()]);
+		dirty.clear();
+		for (TableCellBalloonTip balloon : batch) {
+			long start = StallWatchdog.enter(balloon, "updateCellPosition", null);
+			try {
+				balloon.updateCellPosition();
+			} finally {
+				StallWatchdog.exit(start);
+			}
+		}
+	}
+}
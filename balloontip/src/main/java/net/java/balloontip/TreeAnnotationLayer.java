@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.awt.Rectangle;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.JTree;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+import net.java.balloontip.styles.BalloonTipStyle;
+
+/**
+ * An annotation layer for the nodes of a JTree
+ * Only the annotations of nodes that are visible (i.e. whose parent nodes are expanded) are shown.
+ * Annotations are not removed along with their node; if a node is removed, its annotation simply isn't shown anymore.
+ * @author Tim Molderez
+ */
+public class TreeAnnotationLayer extends AnnotationLayer<TreePath> {
+	private final HashMap<TreePath, String> annotations = new HashMap<TreePath, String>();
+	private TreeModel model;
+
+	// Nodes may move when nodes are expanded/collapsed, or when the tree is modified
+	private final TreeExpansionListener expansionListener = new TreeExpansionListener() {
+		public void treeExpanded(TreeExpansionEvent e) {
+			refreshLater();
+		}
+
+		public void treeCollapsed(TreeExpansionEvent e) {
+			refreshLater();
+		}
+	};
+
+	private final TreeModelListener modelListener = new TreeModelListener() {
+		public void treeStructureChanged(TreeModelEvent e) {
+			refreshLater();
+		}
+
+		public void treeNodesRemoved(TreeModelEvent e) {
+			refreshLater();
+		}
+
+		public void treeNodesInserted(TreeModelEvent e) {
+			refreshLater();
+		}
+
+		public void treeNodesChanged(TreeModelEvent e) {
+			refreshLater();
+		}
+	};
+
+	// Follow the tree if it gets a new model
+	private final PropertyChangeListener treeModelListener = new PropertyChangeListener() {
+		public void propertyChange(PropertyChangeEvent e) {
+			if (model != null) {
+				model.removeTreeModelListener(modelListener);
+			}
+			model = getTree().getModel();
+			if (model != null) {
+				model.addTreeModelListener(modelListener);
+			}
+			refreshLater();
+		}
+	};
+
+	/**
+	 * Constructor
+	 * @see net.java.balloontip.AnnotationLayer#AnnotationLayer(javax.swing.JComponent, BalloonTipStyle, BalloonTip.Orientation, BalloonTip.AttachLocation, int, int)
+	 * @param tree		the tree whose nodes are annotated (may not be null)
+	 */
+	public TreeAnnotationLayer(JTree tree, BalloonTipStyle style, BalloonTip.Orientation orientation, BalloonTip.AttachLocation attachLocation,
+			int horizontalOffset, int verticalOffset) {
+		super(tree, style, orientation, attachLocation, horizontalOffset, verticalOffset);
+		model = tree.getModel();
+		if (model != null) {
+			model.addTreeModelListener(modelListener);
+		}
+		tree.addTreeExpansionListener(expansionListener);
+		tree.addPropertyChangeListener(JTree.TREE_MODEL_PROPERTY, treeModelListener);
+	}
+
+	/**
+	 * Annotate a tree node
+	 * @param path		path to the tree node
+	 * @param text		the annotation (may contain HTML); if null, the node's annotation is removed
+	 */
+	public void setAnnotation(TreePath path, String text) {
+		if (text == null) {
+			removeAnnotation(path);
+			return;
+		}
+		annotations.put(path, text);
+		refreshLater();
+	}
+
+	/**
+	 * Get the annotation of a tree node
+	 * @param path		path to the tree node
+	 * @return			the annotation, or null if the node isn't annotated
+	 */
+	public String getAnnotation(TreePath path) {
+		return annotations.get(path);
+	}
+
+	/**
+	 * Remove the annotation of a tree node
+	 * @param path		path to the tree node
+	 */
+	public void removeAnnotation(TreePath path) {
+		if (annotations.remove(path) != null) {
+			refreshLater();
+		}
+	}
+
+	public int getAnnotationCount() {
+		return annotations.size();
+	}
+
+	public void clearAnnotations() {
+		annotations.clear();
+		refreshLater();
+	}
+
+	public void dispose() {
+		JTree tree = getTree();
+		if (model != null) {
+			model.removeTreeModelListener(modelListener);
+		}
+		tree.removeTreeExpansionListener(expansionListener);
+		tree.removePropertyChangeListener(JTree.TREE_MODEL_PROPERTY, treeModelListener);
+		super.dispose();
+	}
+
+	protected void collectVisible(Rectangle visibleRect, Map<TreePath, String> result) {
+		JTree tree = getTree();
+		if (tree.getRowCount() == 0) {
+			return;
+		}
+		// Only the rows in view are looked up, no matter how many nodes are annotated
+		int first = tree.getClosestRowForLocation(visibleRect.x, visibleRect.y);
+		int last = tree.getClosestRowForLocation(visibleRect.x, visibleRect.y + visibleRect.height - 1);
+		for (int row = first; row <= last; ++row) {
+			TreePath path = tree.getPathForRow(row);
+			String text = annotations.get(path);
+			if (text != null) {
+				Rectangle bounds = tree.getPathBounds(path);
+				if (bounds != null && bounds.intersects(visibleRect)) {
+					result.put(path, text);
+				}
+			}
+		}
+	}
+
+	protected Rectangle getItemBounds(TreePath path) {
+		return getTree().getPathBounds(path);
+	}
+
+	/*
+	 * Retrieve the JTree whose nodes are annotated
+	 * @return			the tree
+	 */
+	private JTree getTree() {
+		return (JTree) component;
+	}
+}
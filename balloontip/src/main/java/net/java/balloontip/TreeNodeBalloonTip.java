@@ -29,21 +29,33 @@ import net.java.balloontip.styles.BalloonTipStyle;
  */
 public class TreeNodeBalloonTip extends CustomBalloonTip {
 	protected TreePath path; // Path to the tree node that our balloon tip is attached to
+	// Visibility criterion: the tree node is visible (i.e. its parent nodes are expanded)
+	private static final int CRITERION_TREE_PATH_VISIBLE = registerVisibilityCriterion("treePathVisible");
 	
 	// Shows/hides the balloon tip when nodes are expanded/collapsed
 	private TreeExpansionListener expansionListener = new TreeExpansionListener() {
 		public void treeExpanded(TreeExpansionEvent e) {
-			if(getTree().isVisible(path)) {
-				visibilityControl.setCriterionAndUpdate("treeExpansion", true);
+			long start = StallWatchdog.enter(TreeNodeBalloonTip.this, "treeExpanded", e);
+			try {
+				if(getTree().isVisible(path)) {
+					visibilityControl.setCriterionAndUpdate(CRITERION_TREE_PATH_VISIBLE, true);
+				}
+				setTreePath(path);
+			} finally {
+				StallWatchdog.exit(start);
 			}
-			setTreePath(path);
 		}
 		
 		public void treeCollapsed(TreeExpansionEvent e) {
-			if(!getTree().isVisible(path)) {
-				visibilityControl.setCriterionAndUpdate("treeExpansion", false);
-			} else {
-				setTreePath(path);
+			long start = StallWatchdog.enter(TreeNodeBalloonTip.this, "treeCollapsed", e);
+			try {
+				if(!getTree().isVisible(path)) {
+					visibilityControl.setCriterionAndUpdate(CRITERION_TREE_PATH_VISIBLE, false);
+				} else {
+					setTreePath(path);
+				}
+			} finally {
+				StallWatchdog.exit(start);
 			}
 		}
 	};
@@ -51,31 +63,51 @@ public class TreeNodeBalloonTip extends CustomBalloonTip {
 	// Adjusts the balloon tip when the tree is modified
 	private TreeModelListener modelListener = new TreeModelListener() {
 		public void treeStructureChanged(TreeModelEvent e) {
-			setTreePath(path);
+			long start = StallWatchdog.enter(TreeNodeBalloonTip.this, "treeStructureChanged", e);
+			try {
+				setTreePath(path);
+			} finally {
+				StallWatchdog.exit(start);
+			}
 		}
 		
 		public void treeNodesRemoved(TreeModelEvent e) {
-			boolean closeBalloon = false;
-			for (Object child : e.getChildren()) {
-				// Is this.path a descendant of the path being removed?
-				if (e.getTreePath().pathByAddingChild(child).isDescendant(path)) {
-					closeBalloon = true;
+			long start = StallWatchdog.enter(TreeNodeBalloonTip.this, "treeNodesRemoved", e);
+			try {
+				boolean closeBalloon = false;
+				for (Object child : e.getChildren()) {
+					// Is this.path a descendant of the path being removed?
+					if (e.getTreePath().pathByAddingChild(child).isDescendant(path)) {
+						closeBalloon = true;
+					}
 				}
-			}
 			
-			if (closeBalloon) {
-				closeBalloon();
-			} else {
-				setTreePath(path);
+				if (closeBalloon) {
+					closeBalloon();
+				} else {
+					setTreePath(path);
+				}
+			} finally {
+				StallWatchdog.exit(start);
 			}
 		}
 		
 		public void treeNodesInserted(TreeModelEvent e) {
-			setTreePath(path);
+			long start = StallWatchdog.enter(TreeNodeBalloonTip.this, "treeNodesInserted", e);
+			try {
+				setTreePath(path);
+			} finally {
+				StallWatchdog.exit(start);
+			}
 		}
 		
 		public void treeNodesChanged(TreeModelEvent e) {
-			setTreePath(path);
+			long start = StallWatchdog.enter(TreeNodeBalloonTip.this, "treeNodesChanged", e);
+			try {
+				setTreePath(path);
+			} finally {
+				StallWatchdog.exit(start);
+			}
 		}
 	};
 
@@ -124,9 +156,7 @@ public class TreeNodeBalloonTip extends CustomBalloonTip {
 	 */
 	private void setup(TreePath path) {
 		this.path = path;
-		if(!getTree().isVisible(path)) {
-			visibilityControl.setCriterionAndUpdate("treePath", false);
-		}
+		visibilityControl.setCriterionAndUpdate(CRITERION_TREE_PATH_VISIBLE, getTree().isVisible(path));
 		
 		JTree tree = getTree();
 		tree.addTreeExpansionListener(expansionListener);
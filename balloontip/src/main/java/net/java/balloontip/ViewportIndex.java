@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+
+import javax.swing.JLayeredPane;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import net.java.balloontip.positioners.BasicBalloonTipPositioner;
+import net.java.balloontip.positioners.CenteredPositioner;
+
+/**
+ * Keeps track of the balloon tips inside a viewport, sorted by the vertical position of their attached rectangle
+ * The rectangles are stored in the coordinates of the viewport's view, so they don't change when scrolling.
+ * When the viewport scrolls, only the balloon tips that were within the viewport before, and those whose attached
+ * rectangle overlaps with the new visible area, need to be checked. All other balloon tips were invisible and remain so;
+ * they're not even repositioned until they come into view again.
+ * (Like Swing components, this class should only be used on the event dispatch thread.)
+ * @author Tim Molderez
+ */
+final class ViewportIndex implements ChangeListener {
+	private static final String CLIENT_PROPERTY = ViewportIndex.class.getName();
+
+	private final JViewport viewport;
+	private final ArrayList<BalloonTip> balloons = new ArrayList<BalloonTip>();	// All balloon tips inside this viewport
+	private final LinkedHashSet<BalloonTip> inside = new LinkedHashSet<BalloonTip>();	// Balloon tips whose tip was within the viewport at the last check
+
+	// The index itself
+	private boolean valid = false;
+	private Component indexedView = null;		// The view, and its size, at the time the index was built
+	private int indexedViewWidth;
+	private int indexedViewHeight;
+	private final ArrayList<Entry> entries = new ArrayList<Entry>();		// Sorted by the top of the attached rectangle
+	private final ArrayList<BalloonTip> unindexed = new ArrayList<BalloonTip>();	// Balloon tips whose tip may be anywhere; these are always checked
+	private int maxHeight = 0;					// Height of the tallest attached rectangle in the index
+
+	private final LinkedHashSet<BalloonTip> candidates = new LinkedHashSet<BalloonTip>();	// Reused in each check
+
+	private static final Comparator<Entry> BY_TOP = new Comparator<Entry>() {
+		public int compare(Entry a, Entry b) {
+			return a.top < b.top ? -1 : (a.top == b.top ? 0 : 1);
+		}
+	};
+
+	/*
+	 * Constructor
+	 * @param viewport		the viewport that is indexed
+	 */
+	private ViewportIndex(JViewport viewport) {
+		this.viewport = viewport;
+	}
+
+	/*
+	 * Add a balloon tip to the index of a viewport (the index is created if needed)
+	 * @param viewport		the viewport
+	 * @param balloon		a balloon tip attached to a component inside the viewport
+	 */
+	static void register(JViewport viewport, BalloonTip balloon) {
+		ViewportIndex index = (ViewportIndex) viewport.getClientProperty(CLIENT_PROPERTY);
+		if (index == null) {
+			index = new ViewportIndex(viewport);
+			viewport.putClientProperty(CLIENT_PROPERTY, index);
+			viewport.addChangeListener(index);
+		}
+		index.balloons.add(balloon);
+		index.valid = false;
+	}
+
+	/*
+	 * Remove a balloon tip from the index of a viewport (the index is dropped once it's empty)
+	 * @param viewport		the viewport
+	 * @param balloon		the balloon tip
+	 */
+	static void unregister(JViewport viewport, BalloonTip balloon) {
+		ViewportIndex index = (ViewportIndex) viewport.getClientProperty(CLIENT_PROPERTY);
+		if (index != null && index.balloons.remove(balloon)) {
+			index.inside.remove(balloon);
+			index.valid = false;
+			if (index.balloons.isEmpty()) {
+				viewport.removeChangeListener(index);
+				viewport.putClientProperty(CLIENT_PROPERTY, null);
+			}
+		}
+	}
+
+	/*
+	 * Indicate that the index of a viewport is outdated, e.g. because the attached rectangle of one of its balloon tips has changed
+	 * (The index is rebuilt during the next scroll event.)
+	 * @param viewport		the viewport
+	 */
+	static void invalidate(JViewport viewport) {
+		ViewportIndex index = (ViewportIndex) viewport.getClientProperty(CLIENT_PROPERTY);
+		if (index != null) {
+			index.valid = false;
+		}
+	}
+
+	/*
+	 * Record whether the tip of a balloon tip was found to be within a viewport
+	 * @param viewport		the viewport
+	 * @param balloon		the balloon tip
+	 * @param isInside		true if the balloon's tip is within the viewport
+	 */
+	static void setInside(JViewport viewport, BalloonTip balloon, boolean isInside) {
+		ViewportIndex index = (ViewportIndex) viewport.getClientProperty(CLIENT_PROPERTY);
+		if (index != null) {
+			if (isInside) {
+				index.inside.add(balloon);
+			} else {
+				index.inside.remove(balloon);
+			}
+		}
+	}
+
+	public void stateChanged(ChangeEvent e) {
+		Component view = viewport.getView();
+		if (view == null) {
+			return;
+		}
+		long start = StallWatchdog.enter(viewport, "viewportIndexChanged", e);
+		try {
+			if (view != indexedView || view.getWidth() != indexedViewWidth || view.getHeight() != indexedViewHeight) {
+				valid = false;
+			}
+
+			// Scrolling this viewport changes where its balloon tips are in the views of any enclosing viewports
+			for (Container parent = viewport.getParent(); parent != null; parent = parent.getParent()) {
+				if (parent instanceof JViewport) {
+					invalidate((JViewport) parent);
+				}
+			}
+
+			if (!valid) {
+				rebuild(view);
+			}
+
+			// The visible area, in the view's coordinates
+			int viewTop = -view.getY();
+			int viewBottom = viewTop + viewport.getHeight();
+
+			// Collect the balloon tips whose visibility may have changed
+			candidates.clear();
+			candidates.addAll(inside);
+			candidates.addAll(unindexed);
+			int first = firstEntryFrom(viewTop - 1 - maxHeight); // (-1 because balloons attached to the very top are still allowed)
+			for (int i = first; i < entries.size(); ++i) {
+				Entry entry = entries.get(i);
+				if (entry.top > viewBottom) {
+					break;
+				}
+				if (entry.top + entry.height >= viewTop - 1) {
+					candidates.add(entry.balloon);
+				}
+			}
+
+			BalloonTip[] batch = candidates.toArray(new BalloonTip[candidates.size()]);
+			candidates.clear();
+			for (BalloonTip balloon : batch) {
+				balloon.checkWithinViewports();
+			}
+		} finally {
+			StallWatchdog.exit(start);
+		}
+	}
+
+	/*
+	 * Rebuilds the index
+	 * @param view		the viewport's current view
+	 */
+	private void rebuild(Component view) {
+		entries.clear();
+		unindexed.clear();
+		maxHeight = 0;
+
+		JLayeredPane pane = null;
+		Point viewOrigin = null;		// The view's origin in the coordinates of the balloon tips' top-level container
+		for (BalloonTip balloon : balloons) {
+			JLayeredPane balloonPane = balloon.getTopLevelContainer();
+			/* Only the built-in positioners are guaranteed to put the tip on the attached rectangle (vertically);
+			 * with any other positioner, the tip may be anywhere.. */
+			if (balloonPane == null
+					|| !(balloon.getPositioner() instanceof BasicBalloonTipPositioner || balloon.getPositioner() instanceof CenteredPositioner)) {
+				unindexed.add(balloon);
+				continue;
+			}
+			if (balloonPane != pane) {
+				pane = balloonPane;
+				viewOrigin = SwingUtilities.convertPoint(view, 0, 0, pane);
+			}
+
+			Rectangle attached = balloon.getAttachedRectangle();
+			Entry entry = new Entry();
+			entry.balloon = balloon;
+			entry.top = attached.y - viewOrigin.y;
+			entry.height = attached.height;
+			entries.add(entry);
+			maxHeight = Math.max(maxHeight, attached.height);
+		}
+		Collections.sort(entries, BY_TOP);
+
+		indexedView = view;
+		indexedViewWidth = view.getWidth();
+		indexedViewHeight = view.getHeight();
+		valid = true;
+	}
+
+	/*
+	 * Binary search for the first entry whose top is at least the given value
+	 */
+	private int firstEntryFrom(int top) {
+		int low = 0;
+		int high = entries.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (entries.get(mid).top < top) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/*
+	 * The vertical extent of a balloon tip's attached rectangle, in the view's coordinates
+	 */
+	private static final class Entry {
+		BalloonTip balloon;
+		int top;
+		int height;
+	}
+}
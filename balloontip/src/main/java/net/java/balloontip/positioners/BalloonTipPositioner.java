@@ -9,6 +9,8 @@
 
 package net.java.balloontip.positioners;
 
+import java.awt.Container;
+import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.beans.PropertyChangeEvent;
@@ -25,9 +27,22 @@ public abstract class BalloonTipPositioner {
 	protected BalloonTip balloonTip = null;
 	private PropertyChangeListener styleListener = new PropertyChangeListener() {
 		public void propertyChange(PropertyChangeEvent evt) {
+			invalidateLocation();
 			onStyleChange();
 		}
 	};
+
+	// The inputs of the most recent positioning pass, such that a pass with identical inputs can be skipped
+	private boolean lastPassValid = false;
+	private final Rectangle lastAttached = new Rectangle();
+	private final Rectangle lastBounds = new Rectangle();
+	private int lastPreferredWidth;
+	private int lastPreferredHeight;
+	private int lastContainerWidth;
+	private int lastContainerHeight;
+
+	private static long skippedPasses = 0;		// Number of positioning passes that were skipped, because nothing changed
+	private static long executedPasses = 0;		// Number of positioning passes that were executed
 	
 	/**
 	 * Default constructor
@@ -50,8 +65,22 @@ public abstract class BalloonTipPositioner {
 	public final void setBalloonTip(final BalloonTip balloonTip) {
 		this.balloonTip = balloonTip;
 		this.balloonTip.addPropertyChangeListener("style", styleListener);
+		invalidateLocation();
 		onStyleChange();
 	}
+
+	/**
+	 * This method is meant only to be used by BalloonTip!
+	 * A BalloonTip must call this method when it stops using this positioner (when it's swapping for a new BalloonTipPositioner,
+	 * or when it's returned to its BalloonTipPool), such that the positioner no longer listens to the balloon tip.
+	 */
+	public final void detachBalloonTip() {
+		if (balloonTip != null) {
+			balloonTip.removePropertyChangeListener("style", styleListener);
+			balloonTip = null;
+		}
+		lastPassValid = false;
+	}
 	
 	/**
 	 * Find the current location of the balloon's tip, relative to the top-level container
@@ -65,17 +94,97 @@ public abstract class BalloonTipPositioner {
 	 */
 	public abstract void determineAndSetLocation(Rectangle attached);
 	
+	/**
+	 * Updates the location of the balloon tip, but only if necessary
+	 * If the attached rectangle, the balloon tip's preferred size and the size of the top-level container are the same
+	 * as in the previous call (and the balloon tip was not moved by anyone else), the positioning pass is skipped.
+	 * @param attached		the rectangle to which the balloon tip attaches itself
+	 */
+	public final void updateLocation(Rectangle attached) {
+		Dimension preferredSize = balloonTip.getPreferredSize();
+		Container container = balloonTip.getTopLevelContainer();
+		int containerWidth = container != null ? container.getWidth() : 0;
+		int containerHeight = container != null ? container.getHeight() : 0;
+
+		if (lastPassValid && attached.equals(lastAttached)
+				&& preferredSize.width == lastPreferredWidth && preferredSize.height == lastPreferredHeight
+				&& containerWidth == lastContainerWidth && containerHeight == lastContainerHeight
+				&& balloonTip.getX() == lastBounds.x && balloonTip.getY() == lastBounds.y
+				&& balloonTip.getWidth() == lastBounds.width && balloonTip.getHeight() == lastBounds.height) {
+			++skippedPasses;
+			return;
+		}
+
+		++executedPasses;
+		determineAndSetLocation(attached);
+		lastAttached.setBounds(attached);
+		lastPreferredWidth = preferredSize.width;
+		lastPreferredHeight = preferredSize.height;
+		lastContainerWidth = containerWidth;
+		lastContainerHeight = containerHeight;
+		balloonTip.getBounds(lastBounds);
+		lastPassValid = true;
+	}
+
+	/**
+	 * Forces the next call to updateLocation() to perform a positioning pass
+	 * This is done automatically when changing the positioner's settings or the balloon tip's style.
+	 * (If you modify the style directly, e.g. its offsets, you should call this method yourself.)
+	 */
+	public void invalidateLocation() {
+		lastPassValid = false;
+	}
+
+	/**
+	 * Get the number of positioning passes that were skipped because their inputs did not change (over all positioners)
+	 * @return		number of skipped passes
+	 */
+	public static long getSkippedPassCount() {
+		return skippedPasses;
+	}
+
+	/**
+	 * Get the number of positioning passes that were executed (over all positioners)
+	 * @return		number of executed passes
+	 */
+	public static long getExecutedPassCount() {
+		return executedPasses;
+	}
+
+	/**
+	 * Resets the skipped and executed pass counters
+	 */
+	public static void resetPassCounts() {
+		skippedPasses = 0;
+		executedPasses = 0;
+	}
+
 	/**
 	 * This method is called whenever the balloon tip's style changes.
 	 * The positioner will ensure the new style is set up properly.
 	 */
 	protected abstract void onStyleChange();
-	
-	protected void finalize() throws Throwable {
-		if (balloonTip!=null) {
-			balloonTip.removePropertyChangeListener("style", styleListener);
+
+	/**
+	 * Moves/resizes the balloon tip, while only invalidating what is necessary
+	 * Changing the bounds already repaints the old and new area of the balloon tip, so a repaint is only needed
+	 * if the style's geometry changed while the bounds stayed the same. The balloon tip is only revalidated if its size
+	 * or orientation changed, as those are the only cases in which its contents need to be laid out again.
+	 * @param bounds			the new bounds of the balloon tip
+	 * @param styleChanged		true if the style's offset or orientation changed
+	 * @param flipped			true if the style's orientation changed
+	 */
+	protected void setBalloonTipBounds(Rectangle bounds, boolean styleChanged, boolean flipped) {
+		boolean moved = balloonTip.getX() != bounds.x || balloonTip.getY() != bounds.y;
+		boolean resized = balloonTip.getWidth() != bounds.width || balloonTip.getHeight() != bounds.height;
+		balloonTip.setBounds(bounds);
+
+		if (flipped || resized) {
+			balloonTip.revalidate(); // Revalidate is needed in case the balloon gets flipped; validate wouldn't do in that case.
+		}
+		if (styleChanged && !moved && !resized) {
+			balloonTip.repaint();
 		}
-		super.finalize();
 	}
 	
 }
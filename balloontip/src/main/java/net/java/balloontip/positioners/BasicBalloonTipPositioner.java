@@ -9,9 +9,12 @@
 
 package net.java.balloontip.positioners;
 
+import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
 
+import net.java.balloontip.styles.BalloonTipGeometry;
+
 /**
  * Provides common functionality for the positioner classes
  * LeftAbovePositioner, LeftBelowPositioner, RightAbovePositioner and RightBelowPositioner
@@ -24,6 +27,7 @@ public abstract class BasicBalloonTipPositioner extends BalloonTipPositioner {
 	protected int hOffset = 0;						// Current horizontal offset
 	protected boolean flipX = false;				// Current orientation
 	protected boolean flipY = false;
+	protected Dimension balloonSize = new Dimension();	// Preferred size of the balloon tip, taken once at the start of each positioning pass
 
 	protected int preferredHorizontalOffset;		// The preferred value of the horizontal offset
 	protected int preferredVerticalOffset;			// The preferred value of the vertical offset
@@ -50,9 +54,10 @@ public abstract class BasicBalloonTipPositioner extends BalloonTipPositioner {
 	}
 	
 	protected void onStyleChange() {
-		balloonTip.getStyle().setHorizontalOffset(preferredHorizontalOffset);
-		balloonTip.getStyle().setVerticalOffset(preferredVerticalOffset);
-		minimumHorizontalOffset = balloonTip.getStyle().getMinimalHorizontalOffset();
+		BalloonTipGeometry geometry = balloonTip.getGeometry();
+		geometry.setHorizontalOffset(preferredHorizontalOffset);
+		geometry.setVerticalOffset(preferredVerticalOffset);
+		minimumHorizontalOffset = balloonTip.getStyle().getMinimalHorizontalOffset(geometry);
 	}
 
 	/**
@@ -69,8 +74,9 @@ public abstract class BasicBalloonTipPositioner extends BalloonTipPositioner {
 	 */
 	public void setPreferredHorizontalOffset(int preferredHorizontalOffset) {
 		this.preferredHorizontalOffset = preferredHorizontalOffset;
-		balloonTip.getStyle().setHorizontalOffset(preferredHorizontalOffset);
+		balloonTip.getGeometry().setHorizontalOffset(preferredHorizontalOffset);
 		balloonTip.repaint();
+		invalidateLocation();
 	}
 
 	/**
@@ -88,7 +94,9 @@ public abstract class BasicBalloonTipPositioner extends BalloonTipPositioner {
 	public void setPreferredVerticalOffset(int preferredVerticalOffset) {
 		this.preferredVerticalOffset = preferredVerticalOffset;
 		this.minimumHorizontalOffset = 2 * preferredVerticalOffset;
-		balloonTip.getStyle().setVerticalOffset(preferredVerticalOffset);
+		balloonTip.getGeometry().setVerticalOffset(preferredVerticalOffset);
+		balloonTip.revalidate(); // The style's insets have changed
+		invalidateLocation();
 	}
 
 	/**
@@ -105,6 +113,7 @@ public abstract class BasicBalloonTipPositioner extends BalloonTipPositioner {
 	 */
 	public void enableOffsetCorrection(boolean offsetCorrection) {
 		this.offsetCorrection = offsetCorrection;
+		invalidateLocation();
 	}
 
 	/**
@@ -121,6 +130,7 @@ public abstract class BasicBalloonTipPositioner extends BalloonTipPositioner {
 	 */
 	public void enableOrientationCorrection(boolean orientationCorrection) {
 		this.orientationCorrection = orientationCorrection;
+		invalidateLocation();
 	}
 
 	/**
@@ -137,6 +147,7 @@ public abstract class BasicBalloonTipPositioner extends BalloonTipPositioner {
 	 */
 	public void enableFixedAttachLocation(boolean fixedAttachLocation) {
 		this.fixedAttachLocation = fixedAttachLocation;
+		invalidateLocation();
 	}
 
 	/**
@@ -165,6 +176,7 @@ public abstract class BasicBalloonTipPositioner extends BalloonTipPositioner {
 	public void setAttachLocation(float attachLocationX, float attachLocationY) {
 		this.attachLocationX = attachLocationX;
 		this.attachLocationY = attachLocationY;
+		invalidateLocation();
 	}
 
 	public Point getTipLocation() {
@@ -187,7 +199,7 @@ public abstract class BasicBalloonTipPositioner extends BalloonTipPositioner {
 	protected void applyOffsetCorrection() {
 		// Check collision with the left side of the window
 		int overflow = -x;
-		int balloonWidth = balloonTip.getPreferredSize().width;
+		int balloonWidth = balloonSize.width;
 
 		if (overflow > 0) {
 			x += overflow;
@@ -222,21 +234,17 @@ public abstract class BasicBalloonTipPositioner extends BalloonTipPositioner {
 	}
 	
 	public void determineAndSetLocation(Rectangle attached) {
+		balloonSize.setSize(balloonTip.getPreferredSize());
 		determineLocation(attached);
-		
-		if (flipX) {
-			balloonTip.getStyle().setHorizontalOffset(balloonTip.getPreferredSize().width - hOffset);
-		} else {
-			balloonTip.getStyle().setHorizontalOffset(hOffset);
-		}
-		
-		balloonTip.getStyle().flip(flipX, flipY);
-		balloonTip.setBounds(x, y, balloonTip.getPreferredSize().width, balloonTip.getPreferredSize().height);
-		
-		balloonTip.revalidate(); // Revalidate is needed in case the balloon gets flipped; validate wouldn't do in that case.
-		if (hOffset != preferredHorizontalOffset) {
-			balloonTip.repaint(); // In certain cases, when the horizontal offset changes, it doesn't get redrawn properly without a repaint...
-		}
+
+		BalloonTipGeometry geometry = balloonTip.getGeometry();
+		int horizontalOffset = flipX ? balloonSize.width - hOffset : hOffset;
+		boolean flipped = geometry.isFlippedX() != flipX || geometry.isFlippedY() != flipY;
+		boolean styleChanged = flipped || geometry.getHorizontalOffset() != horizontalOffset;
+
+		geometry.setHorizontalOffset(horizontalOffset);
+		geometry.flip(flipX, flipY);
+		setBalloonTipBounds(new Rectangle(x, y, balloonSize.width, balloonSize.height), styleChanged, flipped);
 	}
 	
 	/*
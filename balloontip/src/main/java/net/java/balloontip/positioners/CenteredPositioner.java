@@ -9,9 +9,12 @@
 
 package net.java.balloontip.positioners;
 
+import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
 
+import net.java.balloontip.styles.BalloonTipGeometry;
+
 /**
  * A positioner that horizontally centers a balloon tip relative to its attached component
  * @author Tim Molderez
@@ -22,6 +25,7 @@ public class CenteredPositioner extends BalloonTipPositioner {
 	protected int y = 0;
 	
 	protected boolean flipY = false;
+	protected Dimension balloonSize = new Dimension();	// Preferred size of the balloon tip, taken once at the start of each positioning pass
 	protected int preferredVerticalOffset;			// The preferred value of the vertical offset		
 
 	protected boolean orientationCorrection = true;	// If true, a balloon tip should flip/mirror itself if otherwise it would become invisible 
@@ -52,7 +56,9 @@ public class CenteredPositioner extends BalloonTipPositioner {
 	 */
 	public void setPreferredVerticalOffset(int preferredVerticalOffset) {
 		this.preferredVerticalOffset = preferredVerticalOffset;
-		balloonTip.getStyle().setVerticalOffset(preferredVerticalOffset);
+		balloonTip.getGeometry().setVerticalOffset(preferredVerticalOffset);
+		balloonTip.revalidate(); // The style's insets have changed
+		invalidateLocation();
 	}
 
 	/**
@@ -69,6 +75,7 @@ public class CenteredPositioner extends BalloonTipPositioner {
 	 */
 	public void enableOrientationCorrection(boolean orientationCorrection) {
 		this.orientationCorrection = orientationCorrection;
+		invalidateLocation();
 	}
 
 	/**
@@ -85,6 +92,7 @@ public class CenteredPositioner extends BalloonTipPositioner {
 	 */
 	public void enableFixedAttachLocation(boolean fixedAttachLocation) {
 		this.fixedAttachLocation = fixedAttachLocation;
+		invalidateLocation();
 	}
 
 	/**
@@ -102,6 +110,7 @@ public class CenteredPositioner extends BalloonTipPositioner {
 	 */
 	public void setAttachLocation(float attachLocationX, float attachLocationY) {
 		this.attachLocationY = attachLocationY;
+		invalidateLocation();
 	}
 
 	public Point getTipLocation() {
@@ -114,10 +123,16 @@ public class CenteredPositioner extends BalloonTipPositioner {
 	}
 
 	public void determineAndSetLocation(Rectangle attached) {
+		BalloonTipGeometry geometry = balloonTip.getGeometry();
+		int horizontalOffset = geometry.getHorizontalOffset();	// (determineLocation() updates the horizontal offset)
+		balloonSize.setSize(balloonTip.getPreferredSize());
 		determineLocation(attached);
-		balloonTip.getStyle().flip(false, flipY);
-		balloonTip.setBounds(x, y, balloonTip.getPreferredSize().width, balloonTip.getPreferredSize().height);
-		balloonTip.revalidate(); // Revalidate is needed in case the balloon gets flipped; validate wouldn't do in that case.
+
+		boolean flipped = geometry.isFlippedX() || geometry.isFlippedY() != flipY;
+		boolean styleChanged = flipped || geometry.getHorizontalOffset() != horizontalOffset;
+
+		geometry.flip(false, flipY);
+		setBalloonTipBounds(new Rectangle(x, y, balloonSize.width, balloonSize.height), styleChanged, flipped);
 	}
 	
 	/*
@@ -126,8 +141,8 @@ public class CenteredPositioner extends BalloonTipPositioner {
 	 */
 	protected void determineLocation(Rectangle attached) {
 		// First calculate the location, without applying any correction tricks
-		int balloonWidth = balloonTip.getPreferredSize().width;
-		int balloonHeight = balloonTip.getPreferredSize().height;
+		int balloonWidth = balloonSize.width;
+		int balloonHeight = balloonSize.height;
 		
 		flipY = false;
 		
@@ -155,11 +170,11 @@ public class CenteredPositioner extends BalloonTipPositioner {
 		}
 		
 		// Finally set the balloon tip's location
-		balloonTip.getStyle().setHorizontalOffset(hOffset);
+		balloonTip.getGeometry().setHorizontalOffset(hOffset);
 	}
 
 	protected void onStyleChange() {
-		balloonTip.getStyle().setHorizontalOffset(getBalloonTip().getWidth() / 2);
-		balloonTip.getStyle().setVerticalOffset(preferredVerticalOffset);
+		balloonTip.getGeometry().setHorizontalOffset(getBalloonTip().getWidth() / 2);
+		balloonTip.getGeometry().setVerticalOffset(preferredVerticalOffset);
 	}
 }
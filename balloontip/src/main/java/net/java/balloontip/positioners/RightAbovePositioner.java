@@ -22,8 +22,8 @@ public class RightAbovePositioner extends BasicBalloonTipPositioner {
 
 	protected void determineLocation(Rectangle attached) {
 		// First calculate the location, without applying any correction tricks
-		int balloonWidth = balloonTip.getPreferredSize().width;
-		int balloonHeight = balloonTip.getPreferredSize().height;
+		int balloonWidth = balloonSize.width;
+		int balloonHeight = balloonSize.height;
 		flipX = true;
 		flipY = false;
 		
@@ -0,0 +1,256 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip.styles;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A process-wide cache of pre-rendered balloon tip borders, shared by all balloon tip styles that have background caching enabled
+ * Frames are identified by their style and geometry, so balloon tips that share a style instance and have the same size and orientation are rendered only once.
+ * When the cache grows beyond its maximum size, the least recently used frames are evicted.
+ * The cache only holds weak references to the styles; once a style is garbage collected, its frames are removed as well.
+ * @author Tim Molderez
+ */
+public final class BalloonFrameCache {
+	private static final LinkedHashMap<Key, BufferedImage> frames = new LinkedHashMap<Key, BufferedImage>(16, 0.75f, true);
+	private static final ReferenceQueue<BalloonTipStyle> discardedStyles = new ReferenceQueue<BalloonTipStyle>();
+	private static long maximumSize = 8 * 1024 * 1024;	// Maximum size of the cache (in bytes)
+	private static long size = 0;						// Current size of the cache (in bytes)
+
+	private static long hits = 0;
+	private static long misses = 0;
+	private static long evictions = 0;
+
+	/*
+	 * Disallow instantiating this class
+	 */
+	private BalloonFrameCache() {}
+
+	/**
+	 * Set the maximum size of the cache
+	 * (If the cache currently is larger, the least recently used frames are evicted right away.)
+	 * @param bytes		maximum size (in bytes)
+	 */
+	public static synchronized void setMaximumSize(long bytes) {
+		maximumSize = bytes;
+		evict();
+	}
+
+	/**
+	 * Get the maximum size of the cache
+	 * @return		maximum size (in bytes)
+	 */
+	public static synchronized long getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * Get the amount of memory currently used by the cached frames
+	 * @return		size of the cache (in bytes)
+	 */
+	public static synchronized long getSize() {
+		expungeDiscardedStyles();
+		return size;
+	}
+
+	/**
+	 * Get the number of frames currently in the cache
+	 * @return		number of cached frames
+	 */
+	public static synchronized int getFrameCount() {
+		expungeDiscardedStyles();
+		return frames.size();
+	}
+
+	/**
+	 * Get the number of times a frame was found in the cache
+	 * @return		number of cache hits
+	 */
+	public static synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of times a frame had to be rendered because it was not in the cache
+	 * @return		number of cache misses
+	 */
+	public static synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * Get the number of frames that were evicted to keep the cache within its maximum size
+	 * @return		number of evictions
+	 */
+	public static synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * Resets the hit, miss and eviction counters
+	 */
+	public static synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	/**
+	 * Removes all frames from the cache
+	 */
+	public static synchronized void clear() {
+		frames.clear();
+		size = 0;
+	}
+
+	/*
+	 * Creates a key to look up the frames of a style
+	 * @param style		the style
+	 * @return			the key; its other fields should be filled in before each lookup
+	 */
+	static Key newKey(BalloonTipStyle style) {
+		Key key = new Key();
+		key.style = new WeakReference<BalloonTipStyle>(style, discardedStyles);
+		key.styleHash = System.identityHashCode(style);
+		return key;
+	}
+
+	/*
+	 * Look up a frame
+	 * @param key		identifies the frame
+	 * @return			the frame, or null if it is not in the cache
+	 */
+	static synchronized BufferedImage get(Key key) {
+		expungeDiscardedStyles();
+		BufferedImage frame = frames.get(key);
+		if (frame != null) {
+			++hits;
+		} else {
+			++misses;
+		}
+		return frame;
+	}
+
+	/*
+	 * Add a frame to the cache
+	 * @param key		identifies the frame (should not be modified afterwards)
+	 * @param frame		the frame
+	 */
+	static synchronized void put(Key key, BufferedImage frame) {
+		expungeDiscardedStyles();
+		BufferedImage old = frames.put(key, frame);
+		if (old != null) {
+			size -= sizeOf(old);
+		}
+		size += sizeOf(frame);
+		evict();
+	}
+
+	/*
+	 * Evict the least recently used frames until the cache fits within its maximum size
+	 */
+	private static void evict() {
+		Iterator<Map.Entry<Key, BufferedImage>> i = frames.entrySet().iterator();
+		while (size > maximumSize && i.hasNext()) {
+			size -= sizeOf(i.next().getValue());
+			i.remove();
+			++evictions;
+		}
+	}
+
+	/*
+	 * Removes the frames of the styles that were garbage collected
+	 */
+	private static void expungeDiscardedStyles() {
+		Reference<? extends BalloonTipStyle> style;
+		while ((style = discardedStyles.poll()) != null) {
+			Iterator<Map.Entry<Key, BufferedImage>> i = frames.entrySet().iterator();
+			while (i.hasNext()) {
+				Map.Entry<Key, BufferedImage> entry = i.next();
+				if (entry.getKey().style == style) {
+					size -= sizeOf(entry.getValue());
+					i.remove();
+				}
+			}
+		}
+	}
+
+	/*
+	 * Estimate the amount of memory used by a frame
+	 */
+	private static long sizeOf(BufferedImage frame) {
+		return (long) frame.getWidth() * frame.getHeight() * 4;
+	}
+
+	/*
+	 * Identifies a frame by its style and geometry
+	 * (Each style has a single weak reference to itself, which is shared by all of its keys; keys can therefore compare these references.)
+	 */
+	static final class Key {
+		WeakReference<BalloonTipStyle> style;
+		int styleHash;			// Identity hash code of the style
+		int version;			// Is incremented by the style whenever its frames become outdated
+		int width;
+		int height;
+		int horizontalOffset;
+		int verticalOffset;
+		boolean flipX;
+		boolean flipY;
+		double scaleX;
+		double scaleY;
+
+		Key copy() {
+			Key key = new Key();
+			key.style = style;
+			key.styleHash = styleHash;
+			key.version = version;
+			key.width = width;
+			key.height = height;
+			key.horizontalOffset = horizontalOffset;
+			key.verticalOffset = verticalOffset;
+			key.flipX = flipX;
+			key.flipY = flipY;
+			key.scaleX = scaleX;
+			key.scaleY = scaleY;
+			return key;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return style == k.style && version == k.version
+					&& width == k.width && height == k.height
+					&& horizontalOffset == k.horizontalOffset && verticalOffset == k.verticalOffset
+					&& flipX == k.flipX && flipY == k.flipY
+					&& scaleX == k.scaleX && scaleY == k.scaleY;
+		}
+
+		public int hashCode() {
+			int hash = styleHash;
+			hash = 31 * hash + version;
+			hash = 31 * hash + width;
+			hash = 31 * hash + height;
+			hash = 31 * hash + horizontalOffset;
+			hash = 31 * hash + verticalOffset;
+			hash = 31 * hash + (flipX ? 1 : 0);
+			hash = 31 * hash + (flipY ? 1 : 0);
+			long scale = Double.doubleToLongBits(scaleX) + 31 * Double.doubleToLongBits(scaleY);
+			return 31 * hash + (int) (scale ^ (scale >>> 32));
+		}
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip.styles;
+
+import java.awt.Paint;
+import java.awt.Shape;
+
+/**
+ * The geometry of one particular balloon tip: the offsets of its tip, and whether it's flipped
+ * Each balloon tip has its own geometry, which is set by its positioner.
+ * A style only reads the geometry of the balloon tip it's painting, so one style instance can be shared by many balloon tips.
+ * Values that were never set fall back on those set via the (deprecated) setters of the style that paints the balloon tip,
+ * such that positioners written against those setters keep working.
+ * @author Tim Molderez
+ */
+public final class BalloonTipGeometry {
+	private int horizontalOffset = 0;
+	private int verticalOffset = 0;
+	private boolean flipX = false;
+	private boolean flipY = false;
+
+	// Which values were set on this geometry itself
+	private boolean horizontalOffsetSet = false;
+	private boolean verticalOffsetSet = false;
+	private boolean flipSet = false;
+
+	private BalloonTipGeometry fallback = null;	// Provides the values that weren't set (the geometry set via a style's deprecated setters)
+
+	// The outline of the balloon tip, as most recently created by a style (see BalloonTipStyle.getOutline())
+	Shape outline = null;
+	BalloonTipStyle outlineStyle;		// The style and bounds that were used to create the cached outline
+	int outlineVersion;
+	int outlineX;
+	int outlineY;
+	int outlineWidth;
+	int outlineHeight;
+
+	// The fill of the balloon tip, as most recently created by a style that fills it with a gradient (see ModernBalloonStyle)
+	Paint fill = null;
+	BalloonTipStyle fillStyle;			// The style and coordinates that were used to create the cached fill
+	int fillTop;
+	int fillBottom;
+
+	/**
+	 * Sets a new value for the horizontal offset
+	 * @param px	horizontal offset (in pixels)
+	 */
+	public void setHorizontalOffset(int px) {
+		if (!horizontalOffsetSet) {
+			horizontalOffset = getHorizontalOffset();
+			horizontalOffsetSet = true;
+		}
+		if (horizontalOffset != px) {
+			horizontalOffset = px;
+			outline = null;
+		}
+	}
+
+	/**
+	 * Sets a new value for the vertical offset
+	 * @param px	vertical offset (in pixels)
+	 */
+	public void setVerticalOffset(int px) {
+		if (!verticalOffsetSet) {
+			verticalOffset = getVerticalOffset();
+			verticalOffsetSet = true;
+		}
+		if (verticalOffset != px) {
+			verticalOffset = px;
+			outline = null;
+		}
+	}
+
+	/**
+	 * Get the current horizontal offset
+	 * @return		horizontal offset (in pixels)
+	 */
+	public int getHorizontalOffset() {
+		return horizontalOffsetSet || fallback == null ? horizontalOffset : fallback.getHorizontalOffset();
+	}
+
+	/**
+	 * Get the current vertical offset
+	 * @return		vertical offset (in pixels)
+	 */
+	public int getVerticalOffset() {
+		return verticalOffsetSet || fallback == null ? verticalOffset : fallback.getVerticalOffset();
+	}
+
+	/**
+	 * Which mirror effect should be applied to the balloon tip
+	 * @param flipX		if true, the balloon tip is flipped horizontally
+	 * @param flipY		if true, the balloon tip is flipped vertically
+	 */
+	public void flip(boolean flipX, boolean flipY) {
+		if (!flipSet) {
+			this.flipX = isFlippedX();
+			this.flipY = isFlippedY();
+			flipSet = true;
+		}
+		if (this.flipX != flipX || this.flipY != flipY) {
+			this.flipX = flipX;
+			this.flipY = flipY;
+			outline = null;
+		}
+	}
+
+	/**
+	 * Is the balloon tip flipped around the vertical axis?
+	 * @return		true if the balloon tip is flipped horizontally
+	 */
+	public boolean isFlippedX() {
+		return flipSet || fallback == null ? flipX : fallback.isFlippedX();
+	}
+
+	/**
+	 * Is the balloon tip flipped around the horizontal axis?
+	 * @return		true if the balloon tip is flipped vertically
+	 */
+	public boolean isFlippedY() {
+		return flipSet || fallback == null ? flipY : fallback.isFlippedY();
+	}
+
+	/**
+	 * This method is meant only to be used by BalloonTip!
+	 * A BalloonTip must call this method whenever it gets a new style, such that the values that weren't set on this geometry
+	 * are taken from those set via the style's (deprecated) setters.
+	 * @param style		the balloon tip's style
+	 */
+	public void setFallback(BalloonTipStyle style) {
+		fallback = style.defaultGeometry;
+		outline = null;
+	}
+
+	/**
+	 * Forgets the values that were set on this geometry (e.g. because the balloon tip has a new positioner)
+	 * From then on, the values set via the style's deprecated setters are used until new values are set.
+	 */
+	public void clear() {
+		horizontalOffsetSet = false;
+		verticalOffsetSet = false;
+		flipSet = false;
+		outline = null;
+	}
+}
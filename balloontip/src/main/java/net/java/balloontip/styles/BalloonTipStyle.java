@@ -10,40 +10,103 @@
 package net.java.balloontip.styles;
 
 import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Insets;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 
-import javax.swing.border.Border;
+import javax.swing.border.AbstractBorder;
+
+import net.java.balloontip.BalloonTip;
 
 /**
  * A balloon tip style defines what a balloon tip should look like
+ * A style doesn't keep track of the geometry (offsets, orientation) of the balloon tips it paints; each balloon tip has its own BalloonTipGeometry.
+ * The same style instance can therefore be shared by any number of balloon tips, as long as it's only used on the event dispatch thread:
+ * the protected offset and flip fields are overwritten with the geometry of each balloon tip that is painted or measured.
  * @author Tim Molderez
  */
-public abstract class BalloonTipStyle implements Border {
+public abstract class BalloonTipStyle extends AbstractBorder {
+	// The geometry of the balloon tip that is being painted or measured (or the values set via the deprecated setters)
+	// These are loaded right before paintBorder(), getBorderInsets(Component) and getMinimalHorizontalOffset() are called.
 	protected int horizontalOffset = 0;
 	protected int verticalOffset = 0;
 	protected boolean flipX = false;
 	protected boolean flipY = false;
+
+	final BalloonTipGeometry defaultGeometry = new BalloonTipGeometry();	// Set via the deprecated setters; balloon tips use it for the values their positioner didn't set
+	private int outlineVersion = 0;				// Is incremented whenever the outlines created by this style become outdated
+
+	private boolean backgroundCaching = false;	// If true, the border is painted from a pre-rendered image in the BalloonFrameCache
+	private int backgroundVersion = 0;			// Is incremented whenever the pre-rendered images of this style become outdated
+	private transient BalloonFrameCache.Key backgroundKey = null;	// Reused to look up pre-rendered images
+
+	private static int maximumCachedPixels = 512 * 512;	// Borders larger than this (in device pixels) are never pre-rendered
 	
 	/**
 	 * Sets a new value for the horizontal offset.
 	 * @param px	horizontal offset (in pixels)
+	 * @deprecated	The offsets are part of each balloon tip's own geometry; use BalloonTip.getGeometry().setHorizontalOffset() instead.
+	 * 				(The value set here is still used by the balloon tips with this style whose positioner doesn't set a horizontal offset.)
 	 */
+	@Deprecated
 	public void setHorizontalOffset(int px) {
+		defaultGeometry.setHorizontalOffset(px);
 		horizontalOffset = px;
+		invalidateOutline();
 	}
 	
 	/**
 	 * Sets a new value for the vertical offset.
 	 * @param px	horizontal offset (in pixels)
+	 * @deprecated	The offsets are part of each balloon tip's own geometry; use BalloonTip.getGeometry().setVerticalOffset() instead.
+	 * 				(The value set here is still used by the balloon tips with this style whose positioner doesn't set a vertical offset.)
 	 */
+	@Deprecated
 	public void setVerticalOffset(int px) {
+		defaultGeometry.setVerticalOffset(px);
 		verticalOffset = px;
+		invalidateOutline();
 	}
 	
+	/**
+	 * Get the current horizontal offset
+	 * (i.e. that of the balloon tip that was last painted or measured, or the value set via setHorizontalOffset())
+	 * @return		horizontal offset (in pixels)
+	 */
+	public int getHorizontalOffset() {
+		return horizontalOffset;
+	}
+
+	/**
+	 * Get the current vertical offset
+	 * (i.e. that of the balloon tip that was last painted or measured, or the value set via setVerticalOffset())
+	 * @return		vertical offset (in pixels)
+	 */
+	public int getVerticalOffset() {
+		return verticalOffset;
+	}
+
+	/**
+	 * Get the minimum value of the horizontal offset for a particular balloon tip
+	 * (Loads the geometry into this style's offsets, then calls getMinimalHorizontalOffset(); subclasses should override that method instead.)
+	 * @param geometry	the balloon tip's geometry
+	 * @return			minimal horizontal offset
+	 */
+	public int getMinimalHorizontalOffset(BalloonTipGeometry geometry) {
+		loadGeometry(geometry);
+		return getMinimalHorizontalOffset();
+	}
+
 	/**
 	 * Get the minimum value of the horizontal offset
 	 * (Also useful as a maximum; maximum horizontaloffset = balloon tip width - minimum horizontal offset)
-	 * @return		minimul horizontal offset
+	 * @return		minimal horizontal offset
 	 */
 	public int getMinimalHorizontalOffset() {
 		return verticalOffset;
@@ -52,29 +115,70 @@ public abstract class BalloonTipStyle implements Border {
 	/**
 	 * Flip around the vertical axis
 	 * @param flipX		if true, the balloon tip is flipped horizontally
+	 * @deprecated	Use BalloonTip.getGeometry().flip() instead.
+	 * 				(The value set here is still used by the balloon tips with this style whose positioner doesn't flip them.)
 	 */
+	@Deprecated
 	public void flipX(boolean flipX) {
-		this.flipX = flipX;
+		flip(flipX, defaultGeometry.isFlippedY());
 	}
 	
 	/**
 	 * Flip around the horizontal axis
 	 * @param flipY		if true, the balloon tip is flipped vertically
+	 * @deprecated	Use BalloonTip.getGeometry().flip() instead.
+	 * 				(The value set here is still used by the balloon tips with this style whose positioner doesn't flip them.)
 	 */
+	@Deprecated
 	public void flipY(boolean flipY) {
-		this.flipY = flipY;
+		flip(defaultGeometry.isFlippedX(), flipY);
 	}
 	
 	/**
 	 * Which mirror effect should be applied to the balloon tip
 	 * @param flipX		if true, the balloon tip is flipped horizontally
 	 * @param flipY		if true, the balloon tip is flipped vertically
+	 * @deprecated	Use BalloonTip.getGeometry().flip() instead.
+	 * 				(The values set here are still used by the balloon tips with this style whose positioner doesn't flip them.)
 	 */
+	@Deprecated
 	public void flip(boolean flipX, boolean flipY) {
+		defaultGeometry.flip(flipX, flipY);
 		this.flipX = flipX;
 		this.flipY = flipY;
+		invalidateOutline();
 	}
 	
+	/**
+	 * Is the balloon tip flipped around the vertical axis?
+	 * (i.e. the balloon tip that was last painted or measured, or the value set via flip())
+	 * @return		true if the balloon tip is flipped horizontally
+	 */
+	public boolean isFlippedX() {
+		return flipX;
+	}
+
+	/**
+	 * Is the balloon tip flipped around the horizontal axis?
+	 * (i.e. the balloon tip that was last painted or measured, or the value set via flip())
+	 * @return		true if the balloon tip is flipped vertically
+	 */
+	public boolean isFlippedY() {
+		return flipY;
+	}
+
+	/**
+	 * Retrieve the geometry of the component that's being painted
+	 * @param c		the component; normally a balloon tip
+	 * @return		the balloon tip's geometry (if the component isn't a balloon tip, the values set by the deprecated setters of this style)
+	 */
+	protected BalloonTipGeometry getGeometry(Component c) {
+		if (c instanceof BalloonTip) {
+			return ((BalloonTip) c).getGeometry();
+		}
+		return defaultGeometry;
+	}
+
 	/**
 	 * Is this balloon tip opaque?
 	 * @return		true if opaque, false if the border uses transparency
@@ -88,4 +192,199 @@ public abstract class BalloonTipStyle implements Border {
 	 * @return		the balloon tip's border insets
 	 */
 	public abstract Insets getBorderInsets(Component c);
+
+	/**
+	 * Retrieve the balloon tip's border insets, reusing an existing Insets object
+	 * (Swing prefers this method during layout, as it avoids creating a new Insets object.
+	 * Subclasses should override it; by default, it loads the component's geometry into this style's offsets,
+	 * and copies the result of getBorderInsets(Component).)
+	 * @param c			the component for which this border's insets are retrieved
+	 * @param insets	the object to be reinitialized
+	 * @return			the insets object
+	 */
+	public Insets getBorderInsets(Component c, Insets insets) {
+		loadGeometry(getGeometry(c));
+		Insets borderInsets = getBorderInsets(c);
+		insets.set(borderInsets.top, borderInsets.left, borderInsets.bottom, borderInsets.right);
+		return insets;
+	}
+
+	/**
+	 * Enable/disable background caching for this style
+	 * If enabled, the border is rendered into an off-screen image once for each geometry; repaints then just draw that image.
+	 * These images are kept in the BalloonFrameCache, such that balloon tips sharing this style also share the images.
+	 * This is mostly worthwhile on slow (software) rendering pipelines, or for styles with gradients, textures or anti-aliasing.
+	 * @param enable	if true, background caching is enabled
+	 */
+	public void enableBackgroundCaching(boolean enable) {
+		backgroundCaching = enable;
+		invalidateBackground();
+	}
+
+	/**
+	 * Is background caching enabled?
+	 * @return		true if background caching is enabled
+	 */
+	public boolean isBackgroundCached() {
+		return backgroundCaching;
+	}
+
+	/**
+	 * Set the maximum size of a pre-rendered background
+	 * (Borders that would need a larger image are always painted directly.)
+	 * @param pixels	the maximum amount of device pixels of a pre-rendered background
+	 */
+	public static void setMaximumCachedPixels(int pixels) {
+		maximumCachedPixels = pixels;
+	}
+
+	/**
+	 * Get the maximum size of a pre-rendered background
+	 * @return		the maximum amount of device pixels of a pre-rendered background
+	 */
+	public static int getMaximumCachedPixels() {
+		return maximumCachedPixels;
+	}
+
+	/**
+	 * Paints the balloon tip's border
+	 * If background caching is enabled, the border is drawn from a pre-rendered image; otherwise this just calls paintBorder().
+	 * @param c			the component for which this border is being painted
+	 * @param g			the paint graphics
+	 * @param x			x-coordinate of the balloon tip's bounds
+	 * @param y			y-coordinate of the balloon tip's bounds
+	 * @param width		width of the balloon tip's bounds
+	 * @param height	height of the balloon tip's bounds
+	 */
+	public void renderBorder(Component c, Graphics g, int x, int y, int width, int height) {
+		BalloonTipGeometry geometry = getGeometry(c);
+		loadGeometry(geometry);
+		if (!backgroundCaching || width <= 0 || height <= 0) {
+			paintBorder(c, g, x, y, width, height);
+			return;
+		}
+
+		// Take into account the scale of the device (HiDPI screens), such that the image is not blurred
+		AffineTransform transform = ((Graphics2D) g).getTransform();
+		if ((transform.getType() & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_MASK_SCALE)) != 0) {
+			paintBorder(c, g, x, y, width, height); // Rotated or sheared; don't bother
+			return;
+		}
+		double scaleX = transform.getScaleX();
+		double scaleY = transform.getScaleY();
+		int imageWidth = (int) Math.ceil(width * scaleX);
+		int imageHeight = (int) Math.ceil(height * scaleY);
+		if ((long) imageWidth * imageHeight > maximumCachedPixels) {
+			paintBorder(c, g, x, y, width, height);
+			return;
+		}
+
+		if (backgroundKey == null) {
+			backgroundKey = BalloonFrameCache.newKey(this);
+		}
+		BalloonFrameCache.Key key = backgroundKey;
+		key.version = backgroundVersion;
+		key.width = width;
+		key.height = height;
+		key.horizontalOffset = geometry.getHorizontalOffset();
+		key.verticalOffset = geometry.getVerticalOffset();
+		key.flipX = geometry.isFlippedX();
+		key.flipY = geometry.isFlippedY();
+		key.scaleX = scaleX;
+		key.scaleY = scaleY;
+
+		BufferedImage background = BalloonFrameCache.get(key);
+		if (background == null) {
+			background = createBackground(c, imageWidth, imageHeight);
+			Graphics2D bg = background.createGraphics();
+			bg.scale(scaleX, scaleY);
+			paintBorder(c, bg, 0, 0, width, height);
+			bg.dispose();
+			BalloonFrameCache.put(key.copy(), background);
+		}
+		g.drawImage(background, x, y, width, height, null);
+	}
+
+	/**
+	 * Retrieve the outline of the balloon tip for the given bounds and geometry
+	 * The outline is cached in the geometry; it's only rebuilt (by calling createOutline()) if the bounds, geometry or style have changed since the previous call.
+	 * (Note that the returned shape is shared; it should not be modified.)
+	 * @param x			x-coordinate of the balloon tip's bounds
+	 * @param y			y-coordinate of the balloon tip's bounds
+	 * @param width		width of the balloon tip's bounds
+	 * @param height	height of the balloon tip's bounds
+	 * @param geometry	the balloon tip's geometry
+	 * @return			the outline of the balloon tip
+	 */
+	protected final Shape getOutline(int x, int y, int width, int height, BalloonTipGeometry geometry) {
+		if (geometry.outline == null || geometry.outlineStyle != this || geometry.outlineVersion != outlineVersion
+				|| x != geometry.outlineX || y != geometry.outlineY || width != geometry.outlineWidth || height != geometry.outlineHeight) {
+			geometry.outline = createOutline(x, y, width, height, geometry);
+			geometry.outlineStyle = this;
+			geometry.outlineVersion = outlineVersion;
+			geometry.outlineX = x;
+			geometry.outlineY = y;
+			geometry.outlineWidth = width;
+			geometry.outlineHeight = height;
+		}
+		return geometry.outline;
+	}
+
+	/**
+	 * Creates the outline of the balloon tip for the given bounds and geometry
+	 * Styles that paint their border using getOutline() should override this method; by default, the outline is just the bounds.
+	 * @param x			x-coordinate of the balloon tip's bounds
+	 * @param y			y-coordinate of the balloon tip's bounds
+	 * @param width		width of the balloon tip's bounds
+	 * @param height	height of the balloon tip's bounds
+	 * @param geometry	the balloon tip's geometry
+	 * @return			the outline of the balloon tip
+	 */
+	protected Shape createOutline(int x, int y, int width, int height, BalloonTipGeometry geometry) {
+		return new Rectangle(x, y, width, height);
+	}
+
+	/**
+	 * Discards the outlines created by this style, such that they are rebuilt the next time they are needed
+	 * Subclasses should call this method whenever a setting changes that affects the outline.
+	 */
+	protected void invalidateOutline() {
+		++outlineVersion;
+	}
+
+	/**
+	 * Discards the pre-rendered backgrounds of this style (if any), such that they are rendered again the next time they are needed
+	 * Subclasses should call this method whenever a setting changes that affects the balloon tip's looks.
+	 * (Outdated images are never used again; the BalloonFrameCache evicts them eventually.)
+	 */
+	protected void invalidateBackground() {
+		++backgroundVersion;
+	}
+
+	/*
+	 * Copies a geometry into the offsets and flip fields, for subclasses that still use those
+	 */
+	private void loadGeometry(BalloonTipGeometry geometry) {
+		horizontalOffset = geometry.getHorizontalOffset();
+		verticalOffset = geometry.getVerticalOffset();
+		flipX = geometry.isFlippedX();
+		flipY = geometry.isFlippedY();
+	}
+
+	/*
+	 * Creates an empty, translucent image that is compatible with the component's screen
+	 * @param c			the component the image will be painted on
+	 * @param width		width of the image
+	 * @param height	height of the image
+	 * @return			the image
+	 */
+	private static BufferedImage createBackground(Component c, int width, int height) {
+		GraphicsConfiguration gc = c != null ? c.getGraphicsConfiguration() : null;
+		if (gc != null) {
+			return gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+		}
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+	}
+
+	private static final long serialVersionUID = 5324950578447327519L;
 }
@@ -14,6 +14,7 @@ import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Insets;
+import java.awt.Shape;
 import java.awt.geom.GeneralPath;
 
 
@@ -38,10 +39,18 @@ public class EdgedBalloonStyle extends BalloonTipStyle {
 	}
 	
 	public Insets getBorderInsets(Component c) {
-		if (flipY) {
-			return new Insets(verticalOffset + 1, 1, 1, 1);
+		return getBorderInsets(c, new Insets(0, 0, 0, 0));
+	}
+
+	public Insets getBorderInsets(Component c, Insets insets) {
+		BalloonTipGeometry geometry = getGeometry(c);
+		int verticalOffset = geometry.getVerticalOffset();
+		if (geometry.isFlippedY()) {
+			insets.set(verticalOffset + 1, 1, 1, 1);
+		} else {
+			insets.set(1, 1, verticalOffset + 1, 1);
 		}
-		return new Insets(1, 1, verticalOffset + 1 , 1);
+		return insets;
 	}
 
 	public boolean isBorderOpaque() {
@@ -50,6 +59,19 @@ public class EdgedBalloonStyle extends BalloonTipStyle {
 
 	public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
 		Graphics2D g2d = (Graphics2D) g;
+		Shape outline = getOutline(x, y, width, height, getGeometry(c));
+
+		g2d.setPaint(fillColor);
+		g2d.fill(outline);
+		g2d.setPaint(borderColor);
+		g2d.draw(outline);
+	}
+
+	protected Shape createOutline(int x, int y, int width, int height, BalloonTipGeometry geometry) {
+		int horizontalOffset = geometry.getHorizontalOffset();
+		int verticalOffset = geometry.getVerticalOffset();
+		boolean flipX = geometry.isFlippedX();
+		boolean flipY = geometry.isFlippedY();
 		width-=1;
 		height-=1;
 
@@ -92,10 +114,8 @@ public class EdgedBalloonStyle extends BalloonTipStyle {
 		}
 
 		outline.closePath();
-
-		g2d.setPaint(fillColor);
-		g2d.fill(outline);
-		g2d.setPaint(borderColor);
-		g2d.draw(outline);
+		return outline;
 	}
+
+	private static final long serialVersionUID = -3628500538012883497L;
 }
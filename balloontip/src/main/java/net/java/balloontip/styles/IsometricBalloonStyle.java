@@ -14,7 +14,13 @@ import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Insets;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 
 /**
  * A balloon tip style with a depth effect
@@ -23,6 +29,7 @@ import java.awt.geom.GeneralPath;
  */
 public class IsometricBalloonStyle extends BalloonTipStyle {
 	private final Color sideColor;
+	private final Color darkSideColor;
 	private final Color frontColor;
 	private int depth;
 
@@ -35,15 +42,24 @@ public class IsometricBalloonStyle extends BalloonTipStyle {
 	public IsometricBalloonStyle(Color frontColor, Color sideColor, int depth) {
 		super();
 		this.sideColor = sideColor;
+		this.darkSideColor = sideColor.darker();
 		this.frontColor = frontColor;
 		this.depth = depth;
 	}
 	
 	public Insets getBorderInsets(Component c) {
-		if (flipY) {
-			return new Insets(verticalOffset+depth+1, 1, 1, depth+1);
+		return getBorderInsets(c, new Insets(0, 0, 0, 0));
+	}
+
+	public Insets getBorderInsets(Component c, Insets insets) {
+		BalloonTipGeometry geometry = getGeometry(c);
+		int verticalOffset = geometry.getVerticalOffset();
+		if (geometry.isFlippedY()) {
+			insets.set(verticalOffset+depth+1, 1, 1, depth+1);
+		} else {
+			insets.set(depth+1, 1, verticalOffset+1, depth+1);
 		}
-		return new Insets(depth+1, 1, verticalOffset+1, depth+1);
+		return insets;
 	}
 
 	public boolean isBorderOpaque() {
@@ -52,6 +68,32 @@ public class IsometricBalloonStyle extends BalloonTipStyle {
 
 	public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
 		Graphics2D g2d = (Graphics2D) g;
+		Faces faces = (Faces) getOutline(x, y, width, height, getGeometry(c));
+
+		// Draw the top of the balloon
+		g2d.setPaint(sideColor);
+		g2d.fill(faces.top);
+		
+		// Draw the side of the balloon
+		g2d.setPaint(darkSideColor);
+		g2d.fill(faces.side);
+		
+		// Draw the tip's side
+		if (faces.tipSide != null) {
+			g2d.setPaint(darkSideColor);
+			g2d.fill(faces.tipSide);
+		}
+
+		// Draw the front of the balloon
+		g2d.setPaint(frontColor);
+		g2d.fill(faces);
+	}
+
+	protected Shape createOutline(int x, int y, int width, int height, BalloonTipGeometry geometry) {
+		int horizontalOffset = geometry.getHorizontalOffset();
+		int verticalOffset = geometry.getVerticalOffset();
+		boolean flipX = geometry.isFlippedX();
+		boolean flipY = geometry.isFlippedY();
 		width-=(depth+1);
 		height-=1;
 
@@ -65,57 +107,48 @@ public class IsometricBalloonStyle extends BalloonTipStyle {
 			yBottom = y + height - verticalOffset;
 		}
 		
-		// Draw the top of the balloon
+		// The top of the balloon
 		GeneralPath top = new GeneralPath();
 		top.moveTo(x, yTop);
 		top.lineTo(width, yTop);
 		top.lineTo(width+depth, yTop-depth);
 		top.lineTo(x+depth, yTop-depth);
 		top.closePath();
-		g2d.setPaint(sideColor);
-		g2d.fill(top);
 		
-		// Draw the side of the balloon
+		// The side of the balloon
 		GeneralPath side = new GeneralPath();
 		side.moveTo(width, yTop);
 		side.lineTo(width+depth, yTop-depth);
 		side.lineTo(width+depth, yBottom-depth);
 		side.lineTo(width, yBottom);
 		side.closePath();
-		g2d.setPaint(sideColor.darker());
-		g2d.fill(side);
 		
-		// Draw the tip's side
+		// The tip's side
+		GeneralPath tipSide = null;
 		if (flipX && !flipY) {
-			GeneralPath tipSide = new GeneralPath();
+			tipSide = new GeneralPath();
 			tipSide.moveTo(x+width-horizontalOffset, yBottom);
 			tipSide.lineTo(x+width-horizontalOffset+depth, yBottom);
 			tipSide.lineTo(x+width-horizontalOffset+depth, yBottom+verticalOffset-depth);
 			tipSide.lineTo(x+width-horizontalOffset, yBottom+verticalOffset);
 			tipSide.closePath();
-			g2d.setPaint(sideColor.darker());
-			g2d.fill(tipSide);
 		} else if (!flipX && flipY) {
-			GeneralPath tipSide = new GeneralPath();
+			tipSide = new GeneralPath();
 			tipSide.moveTo(x+horizontalOffset, yTop-verticalOffset);
 			tipSide.lineTo(x+horizontalOffset+depth, yTop-verticalOffset-depth);
 			tipSide.lineTo(x+horizontalOffset+verticalOffset+depth, yTop-depth);
 			tipSide.lineTo(x+horizontalOffset+verticalOffset, yTop);
 			tipSide.closePath();
-			g2d.setPaint(sideColor.darker());
-			g2d.fill(tipSide);
 		} else if (flipX && flipY) {
-			GeneralPath tipSide = new GeneralPath();
+			tipSide = new GeneralPath();
 			tipSide.moveTo(x+width-horizontalOffset, yTop);
 			tipSide.lineTo(x+width-horizontalOffset+depth, yTop-depth);
 			tipSide.lineTo(x+width-horizontalOffset+depth, yTop-depth-verticalOffset);
 			tipSide.lineTo(x+width-horizontalOffset, yTop-verticalOffset);
 			tipSide.closePath();
-			g2d.setPaint(sideColor.darker());
-			g2d.fill(tipSide);
 		}
 
-		// Draw the front of the balloon
+		// The front of the balloon
 		GeneralPath front = new GeneralPath();
 		front.moveTo(x, yTop);
 		front.lineTo(x, yBottom);
@@ -144,8 +177,57 @@ public class IsometricBalloonStyle extends BalloonTipStyle {
 		}
 
 		front.closePath();
+		return new Faces(front, top, side, tipSide);
+	}
 
-		g2d.setPaint(frontColor);
-		g2d.fill(front);
+	/*
+	 * The outline of an isometric balloon tip: the front face, along with the depth faces that are built together with it
+	 * (As a shape, it's just the front face.)
+	 */
+	private static final class Faces implements Shape {
+		private final GeneralPath front;
+		private final GeneralPath top;
+		private final GeneralPath side;
+		private final GeneralPath tipSide;	// (null if the tip has no visible side)
+
+		Faces(GeneralPath front, GeneralPath top, GeneralPath side, GeneralPath tipSide) {
+			this.front = front;
+			this.top = top;
+			this.side = side;
+			this.tipSide = tipSide;
+		}
+
+		public Rectangle getBounds() {
+			return front.getBounds();
+		}
+		public Rectangle2D getBounds2D() {
+			return front.getBounds2D();
+		}
+		public boolean contains(double x, double y) {
+			return front.contains(x, y);
+		}
+		public boolean contains(Point2D p) {
+			return front.contains(p);
+		}
+		public boolean intersects(double x, double y, double w, double h) {
+			return front.intersects(x, y, w, h);
+		}
+		public boolean intersects(Rectangle2D r) {
+			return front.intersects(r);
+		}
+		public boolean contains(double x, double y, double w, double h) {
+			return front.contains(x, y, w, h);
+		}
+		public boolean contains(Rectangle2D r) {
+			return front.contains(r);
+		}
+		public PathIterator getPathIterator(AffineTransform at) {
+			return front.getPathIterator(at);
+		}
+		public PathIterator getPathIterator(AffineTransform at, double flatness) {
+			return front.getPathIterator(at, flatness);
+		}
 	}
+
+	private static final long serialVersionUID = -1917387021196612659L;
 }
@@ -15,6 +15,7 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Insets;
 import java.awt.RenderingHints;
+import java.awt.Shape;
 import java.awt.geom.GeneralPath;
 
 /**
@@ -37,16 +38,34 @@ public class MinimalBalloonStyle extends BalloonTipStyle {
 	}
 
 	public Insets getBorderInsets(Component c) {
-		if (flipY) {
-			return new Insets(verticalOffset+arcWidth, arcWidth, arcWidth, arcWidth);
+		return getBorderInsets(c, new Insets(0, 0, 0, 0));
+	}
+
+	public Insets getBorderInsets(Component c, Insets insets) {
+		BalloonTipGeometry geometry = getGeometry(c);
+		int verticalOffset = geometry.getVerticalOffset();
+		if (geometry.isFlippedY()) {
+			insets.set(verticalOffset+arcWidth, arcWidth, arcWidth, arcWidth);
+		} else {
+			insets.set(arcWidth, arcWidth, arcWidth+verticalOffset, arcWidth);
 		}
-		return new Insets(arcWidth, arcWidth, arcWidth+verticalOffset, arcWidth);
+		return insets;
 	}
 
 	public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
 		Graphics2D g2d = (Graphics2D) g;
 		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
+		g2d.setPaint(fillColor);
+		g2d.fill(getOutline(x, y, width, height, getGeometry(c)));
+	}
+
+	protected Shape createOutline(int x, int y, int width, int height, BalloonTipGeometry geometry) {
+		int horizontalOffset = geometry.getHorizontalOffset();
+		int verticalOffset = geometry.getVerticalOffset();
+		boolean flipX = geometry.isFlippedX();
+		boolean flipY = geometry.isFlippedY();
+
 		int yTop;		// Y-coordinate of the top side of the balloon
 		int yBottom;	// Y-coordinate of the bottom side of the balloon
 		if (flipY) {
@@ -103,9 +122,7 @@ public class MinimalBalloonStyle extends BalloonTipStyle {
 		}
 
 		outline.closePath();
-
-		g2d.setPaint(fillColor);
-		g2d.fill(outline);
+		return outline;
 	}
 
 	public int getMinimalHorizontalOffset() {
@@ -115,4 +132,6 @@ public class MinimalBalloonStyle extends BalloonTipStyle {
 	public boolean isBorderOpaque() {
 		return fillColor.getAlpha()==255;
 	}
+
+	private static final long serialVersionUID = -7561315818300226726L;
 }
@@ -17,6 +17,7 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Insets;
 import java.awt.RenderingHints;
+import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.GeneralPath;
 
@@ -37,6 +38,7 @@ public class ModernBalloonStyle extends BalloonTipStyle {
 	private boolean bottomRight = true;
 
 	private int borderThickness = 1;
+	private Stroke borderStroke = new BasicStroke(borderThickness);
 	private boolean AAenabled = false;
 
 	private final Color topFillColor;
@@ -73,6 +75,8 @@ public class ModernBalloonStyle extends BalloonTipStyle {
 		this.topRight = topRight;
 		this.bottomLeft = bottomLeft;
 		this.bottomRight = bottomRight;
+		invalidateOutline();
+		invalidateBackground();
 	}
 
 	/**
@@ -81,6 +85,9 @@ public class ModernBalloonStyle extends BalloonTipStyle {
 	 */
 	public void setBorderThickness(int thickness) {
 		borderThickness = thickness;
+		borderStroke = new BasicStroke(thickness);
+		invalidateOutline();
+		invalidateBackground();
 	}
 
 	/**
@@ -89,13 +96,22 @@ public class ModernBalloonStyle extends BalloonTipStyle {
 	 */
 	public void enableAntiAliasing(boolean enable) {
 		AAenabled = enable;
+		invalidateBackground();
 	}
 
 	public Insets getBorderInsets(Component c) {
-		if (flipY) {
-			return new Insets(verticalOffset+arcHeight, arcWidth, arcHeight, arcWidth);
+		return getBorderInsets(c, new Insets(0, 0, 0, 0));
+	}
+
+	public Insets getBorderInsets(Component c, Insets insets) {
+		BalloonTipGeometry geometry = getGeometry(c);
+		int verticalOffset = geometry.getVerticalOffset();
+		if (geometry.isFlippedY()) {
+			insets.set(verticalOffset+arcHeight, arcWidth, arcHeight, arcWidth);
+		} else {
+			insets.set(arcHeight, arcWidth, arcHeight+verticalOffset, arcWidth);
 		}
-		return new Insets(arcHeight, arcWidth, arcHeight+verticalOffset, arcWidth);
+		return insets;
 	}
 
 	public boolean isBorderOpaque() {
@@ -109,6 +125,40 @@ public class ModernBalloonStyle extends BalloonTipStyle {
 					RenderingHints.VALUE_ANTIALIAS_ON);
 		}
 
+		BalloonTipGeometry geometry = getGeometry(c);
+		Shape outline = getOutline(x, y, width, height, geometry);
+
+		// Y-coordinates of the top and bottom side of the balloon
+		int yTop = y + borderThickness - 1;
+		int yBottom = yTop + height - borderThickness*2;
+		if (geometry.isFlippedY()) {
+			yTop += geometry.getVerticalOffset();
+		} else {
+			yBottom -= geometry.getVerticalOffset();
+		}
+
+		// Now paint the sucker :)
+		// (The gradient is cached in the balloon tip's geometry, as balloon tips sharing this style may have different heights.)
+		if (geometry.fill == null || geometry.fillStyle != this || yTop != geometry.fillTop || yBottom != geometry.fillBottom) {
+			geometry.fill = new GradientPaint(0, yTop,topFillColor, 0, yBottom, bottomFillColor);
+			geometry.fillStyle = this;
+			geometry.fillTop = yTop;
+			geometry.fillBottom = yBottom;
+		}
+		g2d.setPaint(geometry.fill);
+		g2d.fill(outline);
+		g2d.setPaint(borderColor);
+		Stroke backup = g2d.getStroke();
+		g2d.setStroke(borderStroke);
+		g2d.draw(outline);
+		g2d.setStroke(backup);
+	}
+
+	protected Shape createOutline(int x, int y, int width, int height, BalloonTipGeometry geometry) {
+		int horizontalOffset = geometry.getHorizontalOffset();
+		int verticalOffset = geometry.getVerticalOffset();
+		boolean flipX = geometry.isFlippedX();
+		boolean flipY = geometry.isFlippedY();
 		// Make room for the border line
 		x+=borderThickness - 1;
 		y+=borderThickness - 1;
@@ -184,18 +234,12 @@ public class ModernBalloonStyle extends BalloonTipStyle {
 		}
 
 		outline.closePath();
-
-		// Now paint the sucker :)
-		g2d.setPaint(new GradientPaint(0, yTop,topFillColor, 0, yBottom, bottomFillColor));
-		g2d.fill(outline);
-		g2d.setPaint(borderColor);
-		Stroke backup = g2d.getStroke();
-		g2d.setStroke(new BasicStroke(borderThickness));
-		g2d.draw(outline);
-		g2d.setStroke(backup);
+		return outline;
 	}
 
 	public int getMinimalHorizontalOffset() {
 		return arcWidth + verticalOffset + borderThickness;
 	}
+
+	private static final long serialVersionUID = 4891386765580059730L;
 }
@@ -14,6 +14,7 @@ import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Insets;
+import java.awt.Shape;
 import java.awt.geom.GeneralPath;
 
 /**
@@ -45,10 +46,18 @@ public class RoundedBalloonStyle extends BalloonTipStyle {
 	}
 	
 	public Insets getBorderInsets(Component c) {
-		if (flipY) {
-			return new Insets(verticalOffset+arcHeight, arcWidth, arcHeight, arcWidth);
+		return getBorderInsets(c, new Insets(0, 0, 0, 0));
+	}
+
+	public Insets getBorderInsets(Component c, Insets insets) {
+		BalloonTipGeometry geometry = getGeometry(c);
+		int verticalOffset = geometry.getVerticalOffset();
+		if (geometry.isFlippedY()) {
+			insets.set(verticalOffset+arcHeight, arcWidth, arcHeight, arcWidth);
+		} else {
+			insets.set(arcHeight, arcWidth, arcHeight+verticalOffset, arcWidth);
 		}
-		return new Insets(arcHeight, arcWidth, arcHeight+verticalOffset, arcWidth);
+		return insets;
 	}
 
 	public boolean isBorderOpaque() {
@@ -57,6 +66,19 @@ public class RoundedBalloonStyle extends BalloonTipStyle {
 
 	public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
 		Graphics2D g2d = (Graphics2D) g;
+		Shape outline = getOutline(x, y, width, height, getGeometry(c));
+
+		g2d.setPaint(fillColor);
+		g2d.fill(outline);
+		g2d.setPaint(borderColor);
+		g2d.draw(outline);
+	}
+
+	protected Shape createOutline(int x, int y, int width, int height, BalloonTipGeometry geometry) {
+		int horizontalOffset = geometry.getHorizontalOffset();
+		int verticalOffset = geometry.getVerticalOffset();
+		boolean flipX = geometry.isFlippedX();
+		boolean flipY = geometry.isFlippedY();
 		width-=1;
 		height-=1;
 
@@ -104,14 +126,12 @@ public class RoundedBalloonStyle extends BalloonTipStyle {
 		}
 
 		outline.closePath();
-
-		g2d.setPaint(fillColor);
-		g2d.fill(outline);
-		g2d.setPaint(borderColor);
-		g2d.draw(outline);
+		return outline;
 	}
 
 	public int getMinimalHorizontalOffset() {
 		return arcWidth + verticalOffset;
 	}
+
+	private static final long serialVersionUID = 6029718241297022474L;
 }
@@ -15,6 +15,7 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Insets;
 import java.awt.Rectangle;
+import java.awt.Shape;
 import java.awt.TexturePaint;
 import java.awt.geom.GeneralPath;
 import java.awt.image.BufferedImage;
@@ -31,7 +32,7 @@ public class TexturedBalloonStyle extends BalloonTipStyle {
 	private final int arcHeight;
 
 	private final BufferedImage bg;
-	private final Rectangle bgBounds;
+	private final TexturePaint bgPaint;
 	private final Color borderColor;
 
 	/**
@@ -47,15 +48,23 @@ public class TexturedBalloonStyle extends BalloonTipStyle {
 		this.arcWidth = arcWidth;
 		this.arcHeight = arcHeight;
 		this.bg = javax.imageio.ImageIO.read(background);
-		bgBounds = new Rectangle(0,0, bg.getWidth(), bg.getHeight());
+		bgPaint = new TexturePaint(bg, new Rectangle(0,0, bg.getWidth(), bg.getHeight()));
 		this.borderColor = borderColor;
 	}
 	
 	public Insets getBorderInsets(Component c) {
-		if (flipY) {
-			return new Insets(verticalOffset+arcHeight, arcWidth, arcHeight, arcWidth);
+		return getBorderInsets(c, new Insets(0, 0, 0, 0));
+	}
+
+	public Insets getBorderInsets(Component c, Insets insets) {
+		BalloonTipGeometry geometry = getGeometry(c);
+		int verticalOffset = geometry.getVerticalOffset();
+		if (geometry.isFlippedY()) {
+			insets.set(verticalOffset+arcHeight, arcWidth, arcHeight, arcWidth);
+		} else {
+			insets.set(arcHeight, arcWidth, arcHeight+verticalOffset, arcWidth);
 		}
-		return new Insets(arcHeight, arcWidth, arcHeight+verticalOffset, arcWidth);
+		return insets;
 	}
 
 	public boolean isBorderOpaque() {
@@ -64,6 +73,19 @@ public class TexturedBalloonStyle extends BalloonTipStyle {
 
 	public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
 		Graphics2D g2d = (Graphics2D) g;
+		Shape outline = getOutline(x, y, width, height, getGeometry(c));
+
+		g2d.setPaint(bgPaint);
+		g2d.fill(outline);
+		g2d.setPaint(borderColor);
+		g2d.draw(outline);
+	}
+
+	protected Shape createOutline(int x, int y, int width, int height, BalloonTipGeometry geometry) {
+		int horizontalOffset = geometry.getHorizontalOffset();
+		int verticalOffset = geometry.getVerticalOffset();
+		boolean flipX = geometry.isFlippedX();
+		boolean flipY = geometry.isFlippedY();
 		width-=1;
 		height-=1;
 
@@ -112,14 +134,12 @@ public class TexturedBalloonStyle extends BalloonTipStyle {
 		}
 
 		outline.closePath();
-
-		g2d.setPaint(new TexturePaint(bg, bgBounds));
-		g2d.fill(outline);
-		g2d.setPaint(borderColor);
-		g2d.draw(outline);
+		return outline;
 	}
 
 	public int getMinimalHorizontalOffset() {
 		return arcWidth + verticalOffset;
 	}
+
+	private static final long serialVersionUID = 5656737394922367923L;
 }
@@ -36,10 +36,18 @@ public class ToolTipBalloonStyle extends BalloonTipStyle {
 	}
 	
 	public Insets getBorderInsets(Component c) {
-		if (flipY) {
-			return new Insets(verticalOffset + 1, 1, 1, 1);
+		return getBorderInsets(c, new Insets(0, 0, 0, 0));
+	}
+
+	public Insets getBorderInsets(Component c, Insets insets) {
+		BalloonTipGeometry geometry = getGeometry(c);
+		int verticalOffset = geometry.getVerticalOffset();
+		if (geometry.isFlippedY()) {
+			insets.set(verticalOffset + 1, 1, 1, 1);
+		} else {
+			insets.set(1, 1, verticalOffset + 1, 1);
 		}
-		return new Insets(1, 1, verticalOffset + 1 , 1);
+		return insets;
 	}
 
 	public boolean isBorderOpaque() {
@@ -48,12 +56,14 @@ public class ToolTipBalloonStyle extends BalloonTipStyle {
 
 	public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
 		Graphics2D g2d = (Graphics2D) g;
+		BalloonTipGeometry geometry = getGeometry(c);
+		int verticalOffset = geometry.getVerticalOffset();
 		width-=1;
 		height-=1;
 
 		int yTop;		// Y-coordinate of the top side of the balloon
 		int yBottom;	// Y-coordinate of the bottom side of the balloon
-		if (flipY) {
+		if (geometry.isFlippedY()) {
 			yTop = y + verticalOffset;
 			yBottom = y + height;
 		} else {
@@ -67,4 +77,6 @@ public class ToolTipBalloonStyle extends BalloonTipStyle {
 		g2d.setPaint(borderColor);
 		g2d.drawRect(x, yTop, width, yBottom);
 	}
+
+	private static final long serialVersionUID = -4210510651926632891L;
 }
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip.utils;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+
+import javax.swing.Timer;
+
+/**
+ * A single animation clock that drives all balloon tip effects (fades, timeouts, ...)
+ * All active tasks are advanced by the same Swing timer, in one callback on the event dispatch thread per frame.
+ * (Like Swing components, this class should only be used on the event dispatch thread.)
+ * @author Tim Molderez
+ */
+public final class AnimationScheduler {
+
+	/**
+	 * A task that is run by the animation scheduler
+	 */
+	public interface Task {
+		/**
+		 * Advances this task; called by the scheduler once the task's wake-up time has passed
+		 * @param now		the current time (in ns, as returned by System.nanoTime())
+		 * @return			the time at which this task wants to be advanced again (in ns),
+		 * 					or a negative value if the task is finished
+		 */
+		long pulse(long now);
+	}
+
+	/**
+	 * Refers to a scheduled task, such that it can be cancelled
+	 */
+	public static final class Handle {
+		private final Task task;
+		private long wakeTime;				// When should the task be advanced next (in ns)
+		private boolean active = true;		// False once the task has finished or was cancelled
+
+		private Handle(Task task, long wakeTime) {
+			this.task = task;
+			this.wakeTime = wakeTime;
+		}
+
+		/**
+		 * Cancels the task; it will not be advanced anymore
+		 * (Nothing happens if the task already has finished.)
+		 */
+		public void cancel() {
+			active = false;
+		}
+
+		/**
+		 * Is the task still running?
+		 * @return		true if the task has neither finished nor was cancelled
+		 */
+		public boolean isActive() {
+			return active;
+		}
+	}
+
+	private static final ArrayList<Handle> tasks = new ArrayList<Handle>();
+	private static int maximumFrameRate = 60;		// The scheduler never pulses more often than this (in frames per second)
+	private static long lastPulse = System.nanoTime() - 1000000000L;	// Time of the most recent pulse (in ns)
+
+	private static final Timer timer = new Timer(0, new ActionListener() {
+		public void actionPerformed(ActionEvent e) {
+			pulse();
+		}
+	});
+	static {
+		timer.setRepeats(false);
+		timer.setCoalesce(true);
+	}
+
+	/*
+	 * Disallow instantiating this class
+	 */
+	private AnimationScheduler() {}
+
+	/**
+	 * Schedules a task
+	 * @param task		the task
+	 * @param delay		the task is advanced for the first time after this delay (in ms)
+	 * @return			a handle that can be used to cancel the task
+	 */
+	public static Handle schedule(Task task, int delay) {
+		long now = System.nanoTime();
+		Handle handle = new Handle(task, now + delay * 1000000L);
+		tasks.add(handle);
+		reschedule(now);
+		return handle;
+	}
+
+	/**
+	 * Set the maximum frame rate of the scheduler
+	 * Tasks that ask to be advanced more often are simply advanced less often.
+	 * @param fps		maximum number of pulses per second (must be at least 1)
+	 */
+	public static void setMaximumFrameRate(int fps) {
+		if (fps < 1) {
+			throw new IllegalArgumentException("The maximum frame rate must be at least 1");
+		}
+		maximumFrameRate = fps;
+	}
+
+	/**
+	 * Get the maximum frame rate of the scheduler
+	 * @return		maximum number of pulses per second
+	 */
+	public static int getMaximumFrameRate() {
+		return maximumFrameRate;
+	}
+
+	/**
+	 * Get the number of tasks that are currently scheduled
+	 * @return		number of active tasks
+	 */
+	public static int getTaskCount() {
+		int count = 0;
+		for (Handle handle : tasks) {
+			if (handle.active) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Advances all tasks whose wake-up time has passed, and removes the tasks that are done
+	 * If a task throws an exception, it is cancelled; the other tasks are still advanced, and the exception is rethrown afterwards.
+	 */
+	private static void pulse() {
+		long now = System.nanoTime();
+		lastPulse = now;
+
+		// Tasks scheduled during this pulse are appended to the list; they're only considered from the next pulse on
+		int count = tasks.size();
+		int kept = 0;
+		RuntimeException exception = null;
+		Error error = null;
+		for (int i = 0; i < count; ++i) {
+			Handle handle = tasks.get(i);
+			if (handle.active && handle.wakeTime - now <= 0) {
+				try {
+					long wakeTime = handle.task.pulse(now);
+					if (wakeTime < 0) {
+						handle.active = false;
+					} else {
+						handle.wakeTime = wakeTime;
+					}
+				} catch (RuntimeException e) {
+					handle.active = false;
+					if (exception == null && error == null) {
+						exception = e;
+					}
+				} catch (Error e) {
+					handle.active = false;
+					if (exception == null && error == null) {
+						error = e;
+					}
+				}
+			}
+			if (handle.active) {
+				tasks.set(kept++, handle);
+			}
+		}
+		tasks.subList(kept, count).clear();
+		reschedule(now);
+
+		// Only the first exception is passed on (to the event dispatch thread's exception handler)
+		if (exception != null) {
+			throw exception;
+		} else if (error != null) {
+			throw error;
+		}
+	}
+
+	/*
+	 * Sets the timer such that it goes off when the next task should be advanced
+	 * @param now		the current time (in ns)
+	 */
+	private static void reschedule(long now) {
+		long next = Long.MAX_VALUE;
+		boolean found = false;
+		for (Handle handle : tasks) {
+			if (handle.active && (!found || handle.wakeTime - next < 0)) {
+				next = handle.wakeTime;
+				found = true;
+			}
+		}
+		if (!found) {
+			timer.stop();
+			return;
+		}
+
+		// Respect the maximum frame rate
+		long earliest = lastPulse + 1000000000L / maximumFrameRate;
+		if (next - earliest < 0) {
+			next = earliest;
+		}
+		long delay = Math.max(0, (next - now + 999999) / 1000000);
+		timer.setInitialDelay((int) Math.min(delay, Integer.MAX_VALUE));
+		timer.restart();
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip.utils;
+
+/**
+ * An easing curve determines how an effect progresses over time
+ * @author Tim Molderez
+ */
+public interface Easing {
+
+	/** Progresses at a constant speed */
+	Easing LINEAR = new Easing() {
+		public float ease(float fraction) {
+			return fraction;
+		}
+	};
+
+	/** Starts slowly, then speeds up */
+	Easing EASE_IN = new Easing() {
+		public float ease(float fraction) {
+			return fraction * fraction;
+		}
+	};
+
+	/** Starts quickly, then slows down */
+	Easing EASE_OUT = new Easing() {
+		public float ease(float fraction) {
+			return fraction * (2 - fraction);
+		}
+	};
+
+	/** Starts slowly, speeds up, then slows down again */
+	Easing EASE_IN_OUT = new Easing() {
+		public float ease(float fraction) {
+			return fraction * fraction * (3 - 2 * fraction);
+		}
+	};
+
+	/**
+	 * Maps the elapsed fraction of an effect's duration to the fraction of the effect that should be applied
+	 * @param fraction		elapsed fraction of the duration (between 0 and 1)
+	 * @return				progress of the effect (0 at the start, 1 at the end)
+	 */
+	float ease(float fraction);
+}
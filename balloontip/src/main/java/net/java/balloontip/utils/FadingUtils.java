@@ -11,17 +11,31 @@ package net.java.balloontip.utils;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-
-import javax.swing.Timer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 import net.java.balloontip.BalloonTip;
+import net.java.balloontip.BalloonTipMetrics;
 
 /**
- * A utility class for adding simple linear fade-in/out effects to balloon tips
+ * A utility class for adding fade-in/out effects to balloon tips
+ * All effects are driven by the AnimationScheduler, so any number of balloon tips can fade at the same time.
+ * The opacity is computed from the time that has elapsed since the effect started, so an effect always takes
+ * the requested amount of time, even if frames need to be skipped when the event dispatch thread is busy.
+ * (The source of the action event that is passed to an effect's onStop listener is the balloon tip.)
  * @author Tim Molderez
  */
 public final class FadingUtils {
 
+	/* Because of some weird bug, possibly in AlphaComposite, the balloon tip is shifted 1px when the opacity is 1.0f
+	 * We'll just use something as close to 1 as a workaround, for now.. */
+	private static final float FULL_OPACITY = 0.9999999f;
+
+	// The effects that are currently running, per balloon tip
+	// (An effect is removed once it ends or is cancelled, so the map never keeps a balloon tip in memory after its effect.)
+	private static final Map<BalloonTip, Fade> fades = new HashMap<BalloonTip, Fade>();
+
 	/*
 	 * Disallow instantiating this class
 	 */
@@ -35,62 +49,234 @@ public final class FadingUtils {
 	 * @param refreshRate	at how many frames-per-second should the effect run
 	 */
 	public static void fadeInBalloon(final BalloonTip balloon, final ActionListener onStop, final int time, final int refreshRate) {
-		balloon.setOpacity(0.0f);
-		balloon.setVisible(true);
+		fadeInBalloon(balloon, onStop, time, refreshRate, false);
+	}
 
-		final int timeDelta = 1000/refreshRate;
-		// Trigger this timer at the desired refresh rate and stop it once full opacity is reached.
-		final Timer timer = new Timer(timeDelta, new ActionListener () {
-			int curTime=0;
-			public void actionPerformed(ActionEvent e) {
-				curTime += timeDelta;
-				float newOpacity = ((float)curTime)/time; // f(time)=curTime/time
-				if (newOpacity >= 0.9999999f || Float.isNaN(newOpacity)) {
-					((Timer)e.getSource()).stop();
-					/* Because of some weird bug, possibly in AlphaComposite, the balloon tip is shifted 1px when the opacity is 1.0f
-					 * We'll just use something as close to 1 as a workaround, for now.. */
-					balloon.setOpacity(0.9999999f);
-					if (onStop != null) {
-						onStop.actionPerformed(e);
-					}
-				} else {
-					balloon.setOpacity(newOpacity);
-				}
-			}
-		});
-		timer.setRepeats(true);
-		timer.start();
+	/**
+	 * Execute a fade-in effect on a balloon tip
+	 * @param balloon		the balloon tip
+	 * @param onStop		this action listener is triggered once the effect has stopped (may be null)
+	 * @param time			the duration of the fade-in effect (in ms)
+	 * @param refreshRate	at how many frames-per-second should the effect run
+	 * @param useSnapshot	if true, the balloon tip is painted from a snapshot during the effect, such that its contents
+	 * 						are only painted once (see BalloonTip.enableSnapshotPainting()); the contents should not change during the effect
+	 */
+	public static void fadeInBalloon(final BalloonTip balloon, final ActionListener onStop, final int time, final int refreshRate, final boolean useSnapshot) {
+		fadeInBalloon(balloon, onStop, time, refreshRate, useSnapshot, Easing.LINEAR);
 	}
 
 	/**
 	 * Execute a fade-in effect on a balloon tip
+	 * (If the balloon tip is already fading, that effect is cancelled first.)
+	 * @param balloon		the balloon tip
+	 * @param onStop		this action listener is triggered once the effect has stopped (may be null)
+	 * @param time			the duration of the fade-in effect (in ms)
+	 * @param refreshRate	at how many frames-per-second should the effect run
+	 * @param useSnapshot	if true, the balloon tip is painted from a snapshot during the effect, such that its contents
+	 * 						are only painted once (see BalloonTip.enableSnapshotPainting()); the contents should not change during the effect
+	 * @param easing		determines how the opacity progresses over time
+	 */
+	public static void fadeInBalloon(BalloonTip balloon, ActionListener onStop, int time, int refreshRate, boolean useSnapshot, Easing easing) {
+		startFadeIn(balloon, onStop, time, refreshRate, useSnapshot, easing);
+	}
+
+	/**
+	 * Execute a fade-in effect on a balloon tip, and get a handle to it
+	 * (If the balloon tip is already fading, that effect is cancelled first.)
+	 * @param balloon		the balloon tip
+	 * @param onStop		this action listener is triggered once the effect has stopped (may be null)
+	 * @param time			the duration of the fade-in effect (in ms)
+	 * @param refreshRate	at how many frames-per-second should the effect run
+	 * @param useSnapshot	if true, the balloon tip is painted from a snapshot during the effect, such that its contents
+	 * 						are only painted once (see BalloonTip.enableSnapshotPainting()); the contents should not change during the effect
+	 * @param easing		determines how the opacity progresses over time
+	 * @return				a handle that can be used to cancel the effect
+	 */
+	public static AnimationScheduler.Handle startFadeIn(BalloonTip balloon, ActionListener onStop, int time, int refreshRate, boolean useSnapshot, Easing easing) {
+		return fade(balloon, 0.0f, FULL_OPACITY, onStop, time, refreshRate, useSnapshot, easing);
+	}
+
+	/**
+	 * Execute a fade-out effect on a balloon tip
 	 * @param balloon		the balloon tip
 	 * @param onStop		this action listener is triggered once the effect has stopped (may be null)
 	 * @param time			the duration of the fade-out effect (in ms)
 	 * @param refreshRate	at how many frames-per-second should the effect run
 	 */
 	public static void fadeOutBalloon(final BalloonTip balloon, final ActionListener onStop, final int time, final int refreshRate) {
-		balloon.setOpacity(0.9999999f);
+		fadeOutBalloon(balloon, onStop, time, refreshRate, false);
+	}
+
+	/**
+	 * Execute a fade-out effect on a balloon tip
+	 * @param balloon		the balloon tip
+	 * @param onStop		this action listener is triggered once the effect has stopped (may be null)
+	 * @param time			the duration of the fade-out effect (in ms)
+	 * @param refreshRate	at how many frames-per-second should the effect run
+	 * @param useSnapshot	if true, the balloon tip is painted from a snapshot during the effect, such that its contents
+	 * 						are only painted once (see BalloonTip.enableSnapshotPainting()); the contents should not change during the effect
+	 */
+	public static void fadeOutBalloon(final BalloonTip balloon, final ActionListener onStop, final int time, final int refreshRate, final boolean useSnapshot) {
+		fadeOutBalloon(balloon, onStop, time, refreshRate, useSnapshot, Easing.LINEAR);
+	}
+
+	/**
+	 * Execute a fade-out effect on a balloon tip
+	 * (If the balloon tip is already fading, that effect is cancelled first.)
+	 * @param balloon		the balloon tip
+	 * @param onStop		this action listener is triggered once the effect has stopped (may be null)
+	 * @param time			the duration of the fade-out effect (in ms)
+	 * @param refreshRate	at how many frames-per-second should the effect run
+	 * @param useSnapshot	if true, the balloon tip is painted from a snapshot during the effect, such that its contents
+	 * 						are only painted once (see BalloonTip.enableSnapshotPainting()); the contents should not change during the effect
+	 * @param easing		determines how the opacity progresses over time
+	 */
+	public static void fadeOutBalloon(BalloonTip balloon, ActionListener onStop, int time, int refreshRate, boolean useSnapshot, Easing easing) {
+		startFadeOut(balloon, onStop, time, refreshRate, useSnapshot, easing);
+	}
+
+	/**
+	 * Execute a fade-out effect on a balloon tip, and get a handle to it
+	 * (If the balloon tip is already fading, that effect is cancelled first.)
+	 * @param balloon		the balloon tip
+	 * @param onStop		this action listener is triggered once the effect has stopped (may be null)
+	 * @param time			the duration of the fade-out effect (in ms)
+	 * @param refreshRate	at how many frames-per-second should the effect run
+	 * @param useSnapshot	if true, the balloon tip is painted from a snapshot during the effect, such that its contents
+	 * 						are only painted once (see BalloonTip.enableSnapshotPainting()); the contents should not change during the effect
+	 * @param easing		determines how the opacity progresses over time
+	 * @return				a handle that can be used to cancel the effect
+	 */
+	public static AnimationScheduler.Handle startFadeOut(BalloonTip balloon, ActionListener onStop, int time, int refreshRate, boolean useSnapshot, Easing easing) {
+		return fade(balloon, FULL_OPACITY, 0.0f, onStop, time, refreshRate, useSnapshot, easing);
+	}
+
+	/**
+	 * Is a fade effect currently running on a balloon tip?
+	 * @param balloon		the balloon tip
+	 * @return				true if the balloon tip is fading in or out
+	 */
+	public static boolean isFading(BalloonTip balloon) {
+		Fade fade = fades.get(balloon);
+		if (fade != null && !fade.handle.isActive()) {
+			fades.remove(balloon);
+			return false;
+		}
+		return fade != null;
+	}
+
+	/**
+	 * Cancels the fade effect that is running on a balloon tip
+	 * The balloon tip keeps its current opacity and the effect's onStop listener is not triggered.
+	 * @param balloon		the balloon tip
+	 * @return				true if an effect was cancelled; false if the balloon tip was not fading
+	 */
+	public static boolean cancelFade(BalloonTip balloon) {
+		Fade fade = fades.remove(balloon);
+		if (fade == null || !fade.handle.isActive()) {
+			return false;
+		}
+		fade.handle.cancel();
+		if (fade.useSnapshot) {
+			balloon.enableSnapshotPainting(false);
+		}
+		return true;
+	}
+
+	/*
+	 * Starts a fade effect
+	 * @param from		initial opacity
+	 * @param to		final opacity
+	 */
+	private static AnimationScheduler.Handle fade(BalloonTip balloon, float from, float to, ActionListener onStop, int time, int refreshRate, boolean useSnapshot, Easing easing) {
+		cancelFade(balloon);
+		removeCancelledFades();
+		balloon.setOpacity(from);
+		if (useSnapshot) {
+			balloon.enableSnapshotPainting(true);
+		}
 		balloon.setVisible(true);
 
-		final int timeDelta = 1000/refreshRate;
-		final Timer timer = new Timer(timeDelta, new ActionListener () {
-			int curTime=0;
-			public void actionPerformed(ActionEvent e) {
-				curTime += timeDelta;
-				float newOpacity = (-1.0f/time)*curTime+1.0f; // f(time)=(-1/time)*curTime+1
-				if (newOpacity <= 0.0f || Float.isNaN(newOpacity)) {
-					((Timer)e.getSource()).stop();
-					balloon.setOpacity(0.0f);
-					if (onStop != null) {
-						onStop.actionPerformed(e);
-					}
-				} else {
-					balloon.setOpacity(newOpacity);
+		Fade fade = new Fade(balloon, from, to, onStop, time, refreshRate, useSnapshot, easing);
+		fade.handle = AnimationScheduler.schedule(fade, 1000/refreshRate);
+		fades.put(balloon, fade);
+		BalloonTipMetrics.record(BalloonTipMetrics.Metric.FADE_STARTED, 0);
+		return fade.handle;
+	}
+
+	/*
+	 * Removes the effects that were cancelled via their handle rather than via cancelFade()
+	 */
+	private static void removeCancelledFades() {
+		for (Iterator<Fade> i = fades.values().iterator(); i.hasNext();) {
+			if (!i.next().handle.isActive()) {
+				i.remove();
+			}
+		}
+	}
+
+	/*
+	 * A running fade effect
+	 */
+	private static final class Fade implements AnimationScheduler.Task {
+		private final BalloonTip balloon;
+		private final float from;
+		private final float to;
+		private final ActionListener onStop;
+		private final long start;			// When did the effect start (in ns)
+		private final long duration;		// (in ns)
+		private final long frameTime;		// Time between two frames (in ns)
+		private final boolean useSnapshot;
+		private final Easing easing;
+		private AnimationScheduler.Handle handle;
+
+		private Fade(BalloonTip balloon, float from, float to, ActionListener onStop, int time, int refreshRate, boolean useSnapshot, Easing easing) {
+			this.balloon = balloon;
+			this.from = from;
+			this.to = to;
+			this.onStop = onStop;
+			this.start = System.nanoTime();
+			this.duration = time * 1000000L;
+			this.frameTime = 1000000000L / refreshRate;
+			this.useSnapshot = useSnapshot;
+			this.easing = easing;
+		}
+
+		public long pulse(long now) {
+			boolean measure = BalloonTipMetrics.isEnabled();
+			long frameStart = measure ? System.nanoTime() : 0;
+			long next = frame(now);
+			if (measure) {
+				BalloonTipMetrics.record(BalloonTipMetrics.Metric.FADE_FRAME, System.nanoTime() - frameStart);
+			}
+			return next;
+		}
+
+		/*
+		 * Updates the balloon tip's opacity
+		 * @param now		current time (in ns)
+		 * @return			when the next frame is due (in ns), or -1 if the effect has ended
+		 */
+		private long frame(long now) {
+			long elapsed = now - start;
+			if (elapsed >= duration) {
+				balloon.setOpacity(to);
+				if (useSnapshot) {
+					balloon.enableSnapshotPainting(false);
+				}
+				if (fades.get(balloon) == this) {
+					fades.remove(balloon);
 				}
+				if (onStop != null) {
+					onStop.actionPerformed(new ActionEvent(balloon, ActionEvent.ACTION_PERFORMED, null));
+				}
+				return -1;
 			}
-		});
-		timer.setRepeats(true);
-		timer.start();
+
+			// Frames that were missed are simply skipped; the opacity only depends on the elapsed time.
+			float progress = easing.ease((float) elapsed / duration);
+			balloon.setOpacity(from + (to - from) * progress);
+			return now + frameTime;
+		}
 	}
 }
@@ -11,8 +11,10 @@ package net.java.balloontip.utils;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-
-import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 import net.java.balloontip.BalloonTip;
 
@@ -22,6 +24,9 @@ import net.java.balloontip.BalloonTip;
  */
 public final class TimingUtils {
 
+	// The timeouts that are currently pending, per balloon tip (removed once they've run or are cancelled)
+	private static final Map<BalloonTip, ArrayList<Timeout>> timeouts = new HashMap<BalloonTip, ArrayList<Timeout>>();
+
 	/*
 	 * Disallow instantiating this class
 	 */
@@ -34,7 +39,28 @@ public final class TimingUtils {
 	 * @param time				show the balloon for this amount of milliseconds
 	 */
 	public static void showTimedBalloon(final BalloonTip balloon, int time) {
-		showTimedBalloon(balloon, time,new ActionListener() {
+		startTimedBalloon(balloon, time);
+	}
+
+	/**
+	 * Displays a balloon tip for a certain time
+	 * @param balloon			the BalloonTip
+	 * @param time				show the balloon for this amount of milliseconds
+	 * @param onTimeout			this action is taken when time runs out (the action event's source is the balloon tip)
+	 */
+	public static void showTimedBalloon(final BalloonTip balloon, int time, final ActionListener onTimeout) {
+		startTimedBalloon(balloon, time, onTimeout);
+	}
+
+	/**
+	 * Displays a balloon tip for a certain time, then close it, and get a handle to the timeout
+	 * (Note that you cannot reuse this balloon tip after it has been closed.)
+	 * @param balloon			the BalloonTip
+	 * @param time				show the balloon for this amount of milliseconds
+	 * @return					a handle that can be used to cancel the timeout
+	 */
+	public static AnimationScheduler.Handle startTimedBalloon(final BalloonTip balloon, int time) {
+		return startTimedBalloon(balloon, time, new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				balloon.closeBalloon();
 			}
@@ -42,15 +68,85 @@ public final class TimingUtils {
 	}
 
 	/**
-	 * Displays a balloon tip for a certain time
+	 * Displays a balloon tip for a certain time, and get a handle to the timeout
 	 * @param balloon			the BalloonTip
 	 * @param time				show the balloon for this amount of milliseconds
-	 * @param onTimeout			this action is taken when time runs out
+	 * @param onTimeout			this action is taken when time runs out (the action event's source is the balloon tip)
+	 * @return					a handle that can be used to cancel the timeout
 	 */
-	public static void showTimedBalloon(final BalloonTip balloon, int time, ActionListener onTimeout) {
+	public static AnimationScheduler.Handle startTimedBalloon(final BalloonTip balloon, int time, final ActionListener onTimeout) {
 		balloon.setVisible(true);
-		Timer timer = new Timer(time, onTimeout);
-		timer.setRepeats(false);
-		timer.start();
+		removeCancelledTimeouts();
+
+		Timeout timeout = new Timeout(balloon, onTimeout);
+		timeout.handle = AnimationScheduler.schedule(timeout, time);
+		ArrayList<Timeout> pending = timeouts.get(balloon);
+		if (pending == null) {
+			pending = new ArrayList<Timeout>(1);
+			timeouts.put(balloon, pending);
+		}
+		pending.add(timeout);
+		return timeout.handle;
+	}
+
+	/**
+	 * Cancels all pending timeouts of a balloon tip
+	 * (A BalloonTipPool does this when a balloon tip is returned to it, such that a timeout can't affect the balloon tip's next use.)
+	 * @param balloon			the BalloonTip
+	 * @return					true if any timeout was cancelled
+	 */
+	public static boolean cancelTimeouts(BalloonTip balloon) {
+		ArrayList<Timeout> pending = timeouts.remove(balloon);
+		if (pending == null) {
+			return false;
+		}
+		boolean cancelled = false;
+		for (Timeout timeout : pending) {
+			if (timeout.handle.isActive()) {
+				timeout.handle.cancel();
+				cancelled = true;
+			}
+		}
+		return cancelled;
+	}
+
+	/*
+	 * Removes the timeouts that were cancelled via their handle rather than via cancelTimeouts()
+	 */
+	private static void removeCancelledTimeouts() {
+		for (Iterator<ArrayList<Timeout>> i = timeouts.values().iterator(); i.hasNext();) {
+			ArrayList<Timeout> pending = i.next();
+			for (Iterator<Timeout> j = pending.iterator(); j.hasNext();) {
+				if (!j.next().handle.isActive()) {
+					j.remove();
+				}
+			}
+			if (pending.isEmpty()) {
+				i.remove();
+			}
+		}
+	}
+
+	/*
+	 * A pending timeout
+	 */
+	private static final class Timeout implements AnimationScheduler.Task {
+		private final BalloonTip balloon;
+		private final ActionListener onTimeout;
+		private AnimationScheduler.Handle handle;
+
+		private Timeout(BalloonTip balloon, ActionListener onTimeout) {
+			this.balloon = balloon;
+			this.onTimeout = onTimeout;
+		}
+
+		public long pulse(long now) {
+			ArrayList<Timeout> pending = timeouts.get(balloon);
+			if (pending != null && pending.remove(this) && pending.isEmpty()) {
+				timeouts.remove(balloon);
+			}
+			onTimeout.actionPerformed(new ActionEvent(balloon, ActionEvent.ACTION_PERFORMED, null));
+			return -1;
+		}
 	}
 }
@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.border.EmptyBorder;
+
+import net.java.balloontip.styles.BalloonTipStyle;
+import net.java.balloontip.styles.EdgedBalloonStyle;
+import net.java.balloontip.styles.IsometricBalloonStyle;
+import net.java.balloontip.styles.MinimalBalloonStyle;
+import net.java.balloontip.styles.ModernBalloonStyle;
+import net.java.balloontip.styles.RoundedBalloonStyle;
+import net.java.balloontip.styles.TexturedBalloonStyle;
+import net.java.balloontip.styles.ToolTipBalloonStyle;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that repainting a balloon tip whose size and style haven't changed doesn't allocate any objects of its own
+ * What's covered: the border and insets of the styles that only stroke and fill their outline, the border and insets of all styles
+ * with background caching, and the component itself (paintComponent() and a full paint(), both opaque and translucent).
+ * Swing clones the Graphics object in JComponent.paint() and paintComponent(); the component is therefore compared against
+ * a plain JPanel that's painted in the same way, and may not allocate a single byte more.
+ * Not covered: the uncached modern, minimal, isometric and textured styles, and translucent painting of the uncached styles;
+ * Java2D allocates internally when painting those (gradient and texture paint contexts, curved fills, alpha masks).
+ * Allocations are counted per thread; the tests are skipped on JVMs that can't count them.
+ * @author Tim Molderez
+ */
+public class PaintAllocationTest {
+	/**
+	 * A panel whose paintComponent() can be called by the tests
+	 */
+	private static class PlainPanel extends JPanel {
+		PlainPanel() {
+			super(new GridBagLayout());
+		}
+
+		public void paintComponent(Graphics g) {
+			super.paintComponent(g);
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	private static final int WARMUP = 20000;
+	private static final int PAINTS = 10000;
+	private static final int ROUNDS = 5;
+	private static final int WIDTH = 150;
+	private static final int HEIGHT = 80;
+
+	private com.sun.management.ThreadMXBean threads;
+	private Graphics2D g;
+
+	@Before
+	public void setUp() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		g = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB).createGraphics();
+	}
+
+	/**
+	 * Styles that only stroke and fill their outline don't allocate once the outline is cached
+	 * (The minimal and isometric styles are left out, as Java2D itself allocates when filling a curved path without stroking it.)
+	 */
+	@Test
+	public void strokedStylesDontAllocate() {
+		assertNoAllocations(new RoundedBalloonStyle(5, 5, Color.WHITE, Color.BLACK), false);
+		assertNoAllocations(new EdgedBalloonStyle(Color.WHITE, Color.BLUE), false);
+		assertNoAllocations(new ToolTipBalloonStyle(Color.WHITE, Color.BLACK), false);
+	}
+
+	/**
+	 * With background caching, any style is painted by copying its cached frame
+	 */
+	@Test
+	public void cachedStylesDontAllocate() throws IOException {
+		assertNoAllocations(new RoundedBalloonStyle(5, 5, Color.WHITE, Color.BLACK), true);
+		assertNoAllocations(new EdgedBalloonStyle(Color.WHITE, Color.BLUE), true);
+		assertNoAllocations(new ToolTipBalloonStyle(Color.WHITE, Color.BLACK), true);
+		assertNoAllocations(new MinimalBalloonStyle(Color.WHITE, 8), true);
+		assertNoAllocations(new ModernBalloonStyle(10, 10, Color.WHITE, Color.GRAY, Color.RED), true);
+		assertNoAllocations(new IsometricBalloonStyle(Color.WHITE, Color.BLUE, 5), true);
+		assertNoAllocations(new TexturedBalloonStyle(5, 5, BalloonTip.class.getResource("/net/java/balloontip/images/close_default.png"), Color.BLACK), true);
+	}
+
+	/**
+	 * Painting the balloon tip's background doesn't allocate, whether it's opaque or translucent (its composite is reused)
+	 */
+	@Test
+	public void componentDoesntAllocate() {
+		final BalloonTip balloon = createBalloonTip(new RoundedBalloonStyle(5, 5, Color.WHITE, Color.BLACK));
+		final PlainPanel plain = createPlainPanel(balloon);
+		final Graphics2D componentGraphics = (Graphics2D) g.create(); // (A translucent balloon tip changes its composite)
+		try {
+			Runnable paintBalloon = new Runnable() {
+				public void run() {
+					balloon.paintComponent(componentGraphics);
+				}
+			};
+			Runnable paintPlain = new Runnable() {
+				public void run() {
+					plain.paintComponent(componentGraphics);
+				}
+			};
+			assertNoExtraAllocations("paintComponent() of an opaque balloon tip", paintBalloon, paintPlain);
+			balloon.setOpacity(0.5f);
+			assertNoExtraAllocations("paintComponent() of a translucent balloon tip", paintBalloon, paintPlain);
+		} finally {
+			componentGraphics.dispose();
+		}
+	}
+
+	/**
+	 * A full paint() of a balloon tip, including its border and contents, doesn't allocate
+	 */
+	@Test
+	public void fullPaintDoesntAllocate() {
+		assertNoExtraPaintAllocations(new RoundedBalloonStyle(5, 5, Color.WHITE, Color.BLACK), false);
+		assertNoExtraPaintAllocations(new EdgedBalloonStyle(Color.WHITE, Color.BLUE), false);
+		assertNoExtraPaintAllocations(new ModernBalloonStyle(10, 10, Color.WHITE, Color.GRAY, Color.RED), true);
+		assertNoExtraPaintAllocations(new MinimalBalloonStyle(Color.WHITE, 8), true);
+	}
+
+	/*
+	 * Asserts that a full paint() of a balloon tip doesn't allocate more than that of a plain panel
+	 * (With background caching, this is checked for a translucent balloon tip as well.)
+	 */
+	private void assertNoExtraPaintAllocations(BalloonTipStyle style, boolean cached) {
+		style.enableBackgroundCaching(cached);
+		final BalloonTip balloon = createBalloonTip(style);
+		final PlainPanel plain = createPlainPanel(balloon);
+		String name = style.getClass().getSimpleName() + (cached ? " (cached)" : "");
+		Runnable paintBalloon = new Runnable() {
+			public void run() {
+				balloon.paint(g);
+			}
+		};
+		Runnable paintPlain = new Runnable() {
+			public void run() {
+				plain.paint(g);
+			}
+		};
+		assertNoExtraAllocations("paint() by " + name, paintBalloon, paintPlain);
+		if (cached) {
+			balloon.setOpacity(0.5f);
+			assertNoExtraAllocations("translucent paint() by " + name, paintBalloon, paintPlain);
+		}
+	}
+
+	/*
+	 * Asserts that painting a balloon tip doesn't allocate a single byte more than painting a plain panel in the same way
+	 */
+	private void assertNoExtraAllocations(String name, Runnable paintBalloon, Runnable paintPlain) {
+		// Warm up both first, such that the code they share is compiled before either is measured
+		warmUp(paintBalloon);
+		warmUp(paintPlain);
+		long plainBytes = measure(paintPlain);
+		long balloonBytes = measure(paintBalloon);
+		assertEquals("Bytes allocated in " + PAINTS + " runs of " + name + " beyond those of a plain panel", 0, Math.max(0, balloonBytes - plainBytes));
+	}
+
+	/*
+	 * Asserts that painting a style and getting its insets doesn't allocate
+	 */
+	private void assertNoAllocations(BalloonTipStyle style, boolean cached) {
+		style.enableBackgroundCaching(cached);
+		final BalloonTip balloon = createBalloonTip(style);
+		final Insets insets = new Insets(0, 0, 0, 0);
+		String name = style.getClass().getSimpleName() + (cached ? " (cached)" : "");
+
+		assertEquals("Bytes allocated per paint by " + name, 0, measure(new Runnable() {
+			public void run() {
+				balloon.getStyle().renderBorder(balloon, g, 0, 0, WIDTH, HEIGHT);
+			}
+		}) / PAINTS);
+		assertEquals("Bytes allocated per getBorderInsets() by " + name, 0, measure(new Runnable() {
+			public void run() {
+				balloon.getStyle().getBorderInsets(balloon, insets);
+			}
+		}) / PAINTS);
+	}
+
+	/*
+	 * Runs a paint operation until it's warmed up, then counts the bytes allocated by PAINTS more runs
+	 * (This is repeated a few times, and the lowest count is returned: while the JIT compiler is still recompiling the code,
+	 * a round may allocate a few bytes that the compiled code doesn't. An allocation in the paint code itself shows up in every round.)
+	 */
+	private long measure(Runnable paint) {
+		warmUp(paint);
+		long threadId = Thread.currentThread().getId();
+		long lowest = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS && lowest > 0; ++round) {
+			long before = threads.getThreadAllocatedBytes(threadId);
+			for (int i = 0; i < PAINTS; ++i) {
+				paint.run();
+			}
+			lowest = Math.min(lowest, threads.getThreadAllocatedBytes(threadId) - before);
+		}
+		return lowest;
+	}
+
+	/*
+	 * Runs a paint operation WARMUP times
+	 */
+	private void warmUp(Runnable paint) {
+		for (int i = 0; i < WARMUP; ++i) {
+			paint.run();
+		}
+	}
+
+	/*
+	 * Creates a balloon tip with a fixed size
+	 */
+	private BalloonTip createBalloonTip(BalloonTipStyle style) {
+		BalloonTip balloon = new BalloonTip(new JButton("Attached"), new JLabel("Contents"), style,
+				BalloonTip.Orientation.LEFT_ABOVE, BalloonTip.AttachLocation.ALIGNED, 20, 15, false);
+		balloon.setSize(WIDTH, HEIGHT);
+		balloon.validate();
+		return balloon;
+	}
+
+	/*
+	 * Creates a non-opaque panel that is laid out like a balloon tip, but has an empty border
+	 */
+	private PlainPanel createPlainPanel(BalloonTip balloon) {
+		PlainPanel plain = new PlainPanel();
+		plain.setOpaque(false);
+		plain.setBorder(new EmptyBorder(balloon.getInsets()));
+		plain.add(new JLabel(((JLabel) balloon.getContents()).getText()));
+		plain.setSize(WIDTH, HEIGHT);
+		plain.validate();
+		return plain;
+	}
+}
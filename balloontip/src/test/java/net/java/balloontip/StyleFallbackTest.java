@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2011-2013 Bernhard Pauler, Tim Molderez.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the 3-Clause BSD License
+ * which accompanies this distribution, and is available at
+ * http://www.opensource.org/licenses/BSD-3-Clause
+ */
+
+package net.java.balloontip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+
+import net.java.balloontip.positioners.BalloonTipPositioner;
+import net.java.balloontip.styles.BalloonTipGeometry;
+import net.java.balloontip.styles.BalloonTipStyle;
+import net.java.balloontip.styles.EdgedBalloonStyle;
+import net.java.balloontip.styles.RoundedBalloonStyle;
+
+import org.junit.Test;
+
+/**
+ * Checks that a balloon tip's geometry falls back on the values set via its style's deprecated setters
+ * @author Tim Molderez
+ */
+@SuppressWarnings("deprecation")
+public class StyleFallbackTest {
+
+	/**
+	 * A positioner that doesn't set any geometry values itself
+	 */
+	private static class FixedPositioner extends BalloonTipPositioner {
+		public Point getTipLocation() {
+			return new Point(0, 0);
+		}
+
+		public void determineAndSetLocation(Rectangle attached) {
+			balloonTip.setBounds(0, 0, 100, 50);
+		}
+
+		protected void onStyleChange() {}
+	}
+
+	/**
+	 * Values the positioner doesn't set are taken from the style
+	 */
+	@Test
+	public void unsetValuesComeFromStyle() {
+		RoundedBalloonStyle style = new RoundedBalloonStyle(5, 5, Color.WHITE, Color.BLACK);
+		BalloonTip balloon = createBalloonTip(style);
+		style.setHorizontalOffset(33);
+		style.setVerticalOffset(12);
+		style.flip(true, false);
+
+		BalloonTipGeometry geometry = balloon.getGeometry();
+		assertEquals(33, geometry.getHorizontalOffset());
+		assertEquals(12, geometry.getVerticalOffset());
+		assertTrue(geometry.isFlippedX());
+		assertEquals(5 + 12, style.getMinimalHorizontalOffset(geometry));
+	}
+
+	/**
+	 * Values the positioner did set take precedence over the style's
+	 */
+	@Test
+	public void setValuesOverrideStyle() {
+		RoundedBalloonStyle style = new RoundedBalloonStyle(5, 5, Color.WHITE, Color.BLACK);
+		BalloonTip balloon = createBalloonTip(style);
+		balloon.getGeometry().setHorizontalOffset(40);
+		style.setHorizontalOffset(33);
+		style.setVerticalOffset(12);
+
+		assertEquals(40, balloon.getGeometry().getHorizontalOffset());
+		assertEquals(12, balloon.getGeometry().getVerticalOffset());
+	}
+
+	/**
+	 * The geometry follows the balloon tip's current style
+	 */
+	@Test
+	public void fallbackFollowsNewStyle() {
+		RoundedBalloonStyle first = new RoundedBalloonStyle(5, 5, Color.WHITE, Color.BLACK);
+		EdgedBalloonStyle second = new EdgedBalloonStyle(Color.WHITE, Color.BLUE);
+		first.setVerticalOffset(12);
+		second.setVerticalOffset(21);
+		BalloonTip balloon = createBalloonTip(first);
+		assertEquals(12, balloon.getGeometry().getVerticalOffset());
+
+		balloon.setStyle(second);
+		assertEquals(21, balloon.getGeometry().getVerticalOffset());
+	}
+
+	/*
+	 * Creates a balloon tip whose positioner doesn't set any geometry values
+	 */
+	private BalloonTip createBalloonTip(BalloonTipStyle style) {
+		return new BalloonTip(new JButton("Attached"), new JLabel("Contents"), style, new FixedPositioner(), null);
+	}
+}